@@ -0,0 +1,8 @@
+rem JMH benchmarks of the solver. Put jmh-core, jmh-generator-annprocess,
+rem jopt-simple and commons-math3 jars in bench\lib first. Extra arguments go
+rem to JMH, e.g. "bench HotPath -p level=original1".
+if exist bench\out rmdir /s /q bench\out
+mkdir bench\out
+dir /s /b src\*.java bench\src\*.java > bench\out\sources.txt
+javac -d bench/out -cp "bench/lib/*" @bench/out/sources.txt
+java -cp "bench/out;bench/lib/*" org.openjdk.jmh.Main -prof gc %*
\ No newline at end of file
@@ -0,0 +1,124 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import solver.Level;
+import solver.Move;
+import solver.Node;
+import solver.SokoBot;
+import solver.State;
+
+/**
+ * Throughput of the operations the search runs per node, measured on every
+ * level. Run with the gc profiler (bench.bat does) to get the allocation
+ * rate per operation next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+    private static final Move[] MOVES = Move.values();
+
+    /**
+     * Applies one player move to the initial state, cycling through the
+     * four directions.
+     *
+     * @param fixture   Level and inputs
+     * @return          New state, or null if the move is blocked
+     */
+    @Benchmark
+    public State tryApply(LevelFixture fixture) {
+        Move move = MOVES[fixture.next++ & 3];
+        return move.tryApply(fixture.initialState).orElse(null);
+    }
+
+    /**
+     * Hashes the states around the initial one.
+     *
+     * @param fixture   Level and inputs
+     * @return          Hash code
+     */
+    @Benchmark
+    public int stateHashCode(LevelFixture fixture) {
+        State[] states = fixture.states;
+        return states[fixture.next++ % states.length].hashCode();
+    }
+
+    /**
+     * Compares two equal but distinct states, the worst case since the
+     * crate arrays are scanned after the keys match.
+     *
+     * @param fixture   Level and inputs
+     * @return          True
+     */
+    @Benchmark
+    public boolean stateEqualsHit(LevelFixture fixture) {
+        return fixture.initialState.equals(fixture.equalState);
+    }
+
+    /**
+     * Compares states that differ, which the keys should settle.
+     *
+     * @param fixture   Level and inputs
+     * @return          Mostly false
+     */
+    @Benchmark
+    public boolean stateEqualsMiss(LevelFixture fixture) {
+        State[] states = fixture.states;
+        return fixture.initialState.equals(states[fixture.next++ % states.length]);
+    }
+
+    /**
+     * Computes node costs, weighted and unweighted.
+     *
+     * @param fixture   Level and inputs
+     * @param blackhole Sink for the results
+     */
+    @Benchmark
+    public void computeCost(LevelFixture fixture, Blackhole blackhole) {
+        int depth = fixture.next++ & 255;
+
+        blackhole.consume(Node.computeCost(depth, 40));
+        blackhole.consume(Node.computeCost(depth, 40, 2));
+    }
+
+    /**
+     * Runs the deadlock checks on the states right after one push, cycling
+     * through every push of the initial position.
+     *
+     * @param fixture   Level and inputs
+     * @return          True if the push leads to a deadlock
+     */
+    @Benchmark
+    public boolean isInDeadlock(LevelFixture fixture) {
+        if (fixture.pushed.length == 0)
+            return false;
+
+        int i = fixture.next++ % fixture.pushed.length;
+        return SokoBot.isInDeadlock(fixture.deadlocks, fixture.pushed[i], fixture.pushedTo[i]);
+    }
+
+    /**
+     * Builds the level tables: the push-distance table of every goal, the
+     * dead squares and the Zobrist keys. This is the work State.fromLevel
+     * does before any search starts.
+     *
+     * @param fixture   Level and inputs
+     * @return          New level
+     */
+    @Benchmark
+    public Level levelTables(LevelFixture fixture) {
+        return new Level(fixture.mapData, fixture.width, fixture.height);
+    }
+}
@@ -0,0 +1,88 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import reader.FileReader;
+import reader.MapData;
+import solver.DeadlockDetector;
+import solver.DeadlockPatterns;
+import solver.Move;
+import solver.Reachability;
+
+/**
+ * One level of maps/ loaded once per trial, with the inputs the hot path
+ * benchmarks cycle through. Levels are read relative to the working
+ * directory, so benchmarks must be run from the directory holding maps/.
+ */
+@State(Scope.Thread)
+public class LevelFixture {
+    @Param({"twoboxes1", "twoboxes2", "twoboxes3", "threeboxes1", "threeboxes2", "threeboxes3",
+            "fourboxes1", "fourboxes2", "fourboxes3", "fiveboxes1", "fiveboxes2", "fiveboxes3",
+            "original1", "original2", "original3"})
+    public String level;
+
+    public int width;                       // Width of the map
+    public int height;                      // Height of the map
+    public char[][] mapData;                // Walls and goals
+    public char[][] itemsData;              // Player and crates
+    public solver.State initialState;       // State the level starts in
+    public solver.State equalState;         // Equal to the initial state but a different object
+    public solver.State[] states;           // Initial state and the states one step away
+    public solver.State[] pushed;           // States right after one push of one crate
+    public int[] pushedTo;                  // Cell the crate was pushed to, per pushed state
+    public DeadlockDetector deadlocks;      // Detector with learned patterns, as the search uses it
+    public int next;                        // Index of the next input to use
+
+    /**
+     * Loads the level and builds the inputs.
+     */
+    @Setup(Level.Trial)
+    public void load() {
+        MapData data = new FileReader().readFile(level);
+        if (data == null)
+            throw new IllegalStateException("Cannot read maps/" + level + ".txt");
+
+        width = data.columns;
+        height = data.rows;
+        mapData = data.mapLayer();
+        itemsData = data.itemsLayer();
+
+        initialState = solver.State.fromLevel(mapData, itemsData, width, height);
+        equalState = initialState.at(initialState.getPlayer(), initialState.getCrates().clone());
+
+        List<solver.State> around = new ArrayList<>();
+        around.add(initialState);
+        for (Move move : Move.values())
+            move.tryApply(initialState).ifPresent(around::add);
+        states = around.toArray(new solver.State[0]);
+
+        // Every single push of a crate, wherever the player would need to stand
+        boolean[] deadSquares = initialState.getLevel().getDeadSquares();
+        Reachability reach = new Reachability(mapData, width, height);
+        List<solver.State> afterPush = new ArrayList<>();
+        List<Integer> targets = new ArrayList<>();
+
+        for (int crate : initialState.getCrates()) {
+            for (Move move : Move.values()) {
+                int target = reach.neighbour(crate, move);
+
+                if (target >= 0 && !initialState.hasCrateAt(target)) {
+                    afterPush.add(initialState.pushTo(crate, crate, target));
+                    targets.add(target);
+                }
+            }
+        }
+
+        pushed = afterPush.toArray(new solver.State[0]);
+        pushedTo = targets.stream().mapToInt(Integer::intValue).toArray();
+        deadlocks = new DeadlockDetector(deadSquares, reach,
+            new DeadlockPatterns(mapData, width, height, deadSquares));
+    }
+}
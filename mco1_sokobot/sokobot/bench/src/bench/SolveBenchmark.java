@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import solver.SearchEngine;
+import solver.SokoBot;
+import solver.SolveTask;
+import solver.SolverOptions;
+
+/**
+ * Time of a full solveSokobanPuzzle run per level, from reading the map to
+ * the move string. Levels the engine cannot solve within the limit are
+ * cancelled, and such a run reports the limit, so a nightly run always
+ * ends; a result at the limit means unsolved rather than slow.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+    @Param({"ASTAR"})
+    public String engine;
+
+    @Param({"30000"})
+    public long limitMillis;
+
+    /**
+     * Solves the level on the benchmark thread, cancelling it at the limit.
+     *
+     * @param fixture   Level to solve
+     * @return          Length of the solution, or -1 if none was found in time
+     * @throws InterruptedException If the watchdog cannot be stopped
+     */
+    @Benchmark
+    public int solve(LevelFixture fixture) throws InterruptedException {
+        SolverOptions options = new SolverOptions().setEngine(SearchEngine.valueOf(engine));
+        SolveTask task = new SokoBot(options).task(fixture.width, fixture.height, fixture.mapData,
+            fixture.itemsData, null);
+        Thread watchdog = new Thread(() -> {
+            try {
+                Thread.sleep(limitMillis);
+                task.cancel(true);
+            } catch (InterruptedException e) {
+                // Solved in time
+            }
+        }, "solve-watchdog");
+
+        watchdog.setDaemon(true);
+        watchdog.start();
+        task.run();
+        watchdog.interrupt();
+        watchdog.join();
+
+        try {
+            String solution = task.join();
+            return solution.isEmpty() ? -1 : solution.length();
+        } catch (CancellationException e) {
+            return -1;
+        }
+    }
+}
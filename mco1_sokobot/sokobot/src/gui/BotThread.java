@@ -1,30 +1,29 @@
 package gui;
 
+import java.util.function.Consumer;
+
+import solver.Progress;
+import solver.SearchEngine;
 import solver.SokoBot;
+import solver.SolveTask;
+import solver.SolverOptions;
 
 public class BotThread extends Thread {
-  private SokoBot sokoBot;
-  private int width;
-  private int height;
-  private char[][] mapData;
-  private char[][] itemsData;
-
-  private String solution = null;
+  private final SolveTask task;
 
-  public BotThread(int width, int height, char[][] mapData, char[][] itemsData) {
-    sokoBot = new SokoBot();
-    this.width = width;
-    this.height = height;
-    this.mapData = mapData;
-    this.itemsData = itemsData;
+  public BotThread(int width, int height, char[][] mapData, char[][] itemsData, Consumer<Progress> listener) {
+    super("sokobot-solver");
+    setDaemon(true);
+    SokoBot sokoBot = new SokoBot(new SolverOptions().setEngine(SearchEngine.PORTFOLIO));
+    task = sokoBot.task(width, height, mapData, itemsData, listener);
   }
 
   @Override
   public void run() {
-    solution = sokoBot.solveSokobanPuzzle(width, height, mapData, itemsData);
+    task.run();
   }
 
-  public String getSolution() {
-    return solution;
+  public SolveTask getResult() {
+    return task;
   }
 }
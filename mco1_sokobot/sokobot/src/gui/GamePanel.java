@@ -11,9 +11,13 @@ import java.awt.image.BufferedImage;
 import java.awt.Font;
 import javax.swing.Timer;
 import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import javax.swing.SwingUtilities;
 
 import javax.imageio.ImageIO;
 import reader.MapData;
+import solver.Progress;
 
 public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
@@ -48,6 +52,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
   private final String STATUS_WAITING_FOR_SPACE = "Push SPACE to start Bot...";
   private final String STATUS_WAITING_FOR_SOLUTION = "Waiting for solution...";
+  private final String STATUS_SEARCHING = "Searching: %,d nodes, h = %d";
+  private final String STATUS_SOLVER_FAILED = "Bot crashed while thinking...";
   private final String STATUS_SOLUTION_TIMEOUT = "TIME'S UP! Bot took too long thinking...";
   private final String STATUS_PLAYING_SOLUTION = "Playing solution...";
   private final String STATUS_FINISHED_PLAYING_SOLUTION = "SOLUTION FINISHED!";
@@ -63,9 +69,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
   private BotThread solutionThread;
   private Timer solutionTimer;
-  private Timer checkForSolutionTimer;
   private long solutionStartTime;
-  private long solutionEndTime;
 
   private final int SOLUTION_TIME_LIMIT = 15000;
 
@@ -94,54 +98,29 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     progress = 0;
     moves = 0;
 
-    map = new char[mapData.rows][mapData.columns];
-    items = new char[mapData.rows][mapData.columns];
+    map = mapData.mapLayer();
+    items = mapData.itemsLayer();
     playerCount = 0;
     boxCount = 0;
     goalCount = 0;
 
     for (int i = 0; i < mapData.rows; i++) {
       for (int j = 0; j < mapData.columns; j++) {
-        switch (mapData.tiles[i][j]) {
-          case '#':
-            map[i][j] = '#';
-            items[i][j] = ' ';
-            break;
+        if (map[i][j] == '.') {
+          goalCount++;
+        }
+
+        switch (items[i][j]) {
           case '@':
-            map[i][j] = ' ';
-            items[i][j] = '@';
             playerCount++;
             playerRow = i;
             playerColumn = j;
             break;
           case '$':
-            map[i][j] = ' ';
-            items[i][j] = '$';
             boxCount++;
-            break;
-          case '.':
-            map[i][j] = '.';
-            items[i][j] = ' ';
-            goalCount++;
-            break;
-          case '+':
-            map[i][j] = '.';
-            items[i][j] = '@';
-            playerRow = i;
-            playerColumn = j;
-            playerCount++;
-            goalCount++;
-            break;
-          case '*':
-            map[i][j] = '.';
-            items[i][j] = '$';
-            boxCount++;
-            goalCount++;
-            progress++;
-            break;
-          case ' ':
-            map[i][j] = ' ';
-            items[i][j] = ' ';
+            if (map[i][j] == '.') {
+              progress++;
+            }
             break;
         }
       }
@@ -322,13 +301,16 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
           }
         }
 
-        solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy);
-        solutionThread.start();
+        // Progress and the result arrive on the solver thread and are handed to the event thread
+        solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy,
+            progress -> SwingUtilities.invokeLater(() -> showProgress(progress)));
+        solutionThread.getResult().whenComplete((solution, error) ->
+            SwingUtilities.invokeLater(() -> solutionFinished(solution, error)));
         solutionStartTime = System.nanoTime();
         solutionTimer = new Timer(SOLUTION_TIME_LIMIT, this);
+        solutionTimer.setRepeats(false);
         solutionTimer.start();
-        checkForSolutionTimer = new Timer(30, this);
-        checkForSolutionTimer.start();
+        solutionThread.start();
 
         this.repaint();
       }
@@ -382,25 +364,44 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
           executeMove(3);
           break;
       }
-    } else if (e.getSource() == checkForSolutionTimer) {
-      if (!solutionThread.isAlive()) {
-        // Solution was found
-        solutionTimer.stop();
-        checkForSolutionTimer.stop();
-        String solution = solutionThread.getSolution();
-        this.playSolution(solution);
-      }
-      long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
-      this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
-      this.repaint();
     } else if (e.getSource() == solutionTimer) {
-      // Solution was not found
-      solutionTimer.stop();
-      checkForSolutionTimer.stop();
+      if (!solutionThread.getResult().cancel(true)) {
+        // Solution came in just before the deadline and is about to be played
+        return;
+      }
+      // Solution was not found, the search was stopped
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0);
       this.statusString = STATUS_SOLUTION_TIMEOUT;
       this.repaint();
     }
   }
+
+  private void showProgress(Progress progress) {
+    if (solutionThread.getResult().isDone()) {
+      return;
+    }
+    this.statusString = String.format(STATUS_SEARCHING, progress.getExpanded(), progress.getBestHeuristic());
+    long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
+    this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
+    this.repaint();
+  }
+
+  private void solutionFinished(String solution, Throwable error) {
+    if (error instanceof CancellationException) {
+      // Timed out, already handled by the solution timer
+      return;
+    }
+    solutionTimer.stop();
+    long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
+    this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
+    if (error != null) {
+      Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+      cause.printStackTrace(System.err);
+      this.statusString = STATUS_SOLVER_FAILED;
+      this.repaint();
+      return;
+    }
+    this.playSolution(solution);
+  }
 }
@@ -0,0 +1,252 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import reader.FileReader;
+import reader.MapData;
+import solver.SearchEngine;
+import solver.SokoBot;
+import solver.SolutionCache;
+import solver.SolveTask;
+import solver.SolverOptions;
+
+/**
+ * Solves every level in a directory without opening a window and writes one
+ * report line per level: status, solution length, wall time, nodes expanded
+ * and the peak heap in use while it ran. Levels are solved in parallel on a
+ * fixed pool and each one is cancelled when its own time limit runs out,
+ * counted from when it starts rather than when it was queued.
+ *
+ * Nodes are the expansions every engine reports to its monitor; for the
+ * portfolio and the parallel search they add up over all threads. The
+ * heap is shared, so when several levels run at once their peaks include
+ * each other; run with one thread for per-level memory figures. With a
+ * solution cache file, levels solved by an earlier run are answered from it.
+ */
+public class BatchSolver {
+  private static final long SAMPLE_MILLIS = 20;
+  private static final int CACHE_CAPACITY = 1024;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    File directory = new File("maps");
+    int threads = Runtime.getRuntime().availableProcessors();
+    long timeout = 15000;
+    String format = "csv";
+    File output = null;
+    SolverOptions options = new SolverOptions();
+    Path cacheFile = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--threads" -> threads = Integer.parseInt(args[++i]);
+          case "--timeout" -> timeout = Long.parseLong(args[++i]);
+          case "--format" -> format = args[++i];
+          case "--out" -> output = new File(args[++i]);
+          case "--engine" -> options.setEngine(SearchEngine.valueOf(args[++i]));
+          case "--cache" -> cacheFile = Path.of(args[++i]);
+          default -> directory = new File(args[i]);
+        }
+      }
+    } catch (RuntimeException ex) {
+      usage();
+    }
+
+    if (threads < 1 || timeout < 1 || !(format.equals("csv") || format.equals("json"))) {
+      usage();
+    }
+
+    if (cacheFile != null) {
+      try {
+        options.setCache(new SolutionCache(CACHE_CAPACITY, cacheFile));
+      } catch (UncheckedIOException ex) {
+        System.err.println(ex.getMessage() + ": " + ex.getCause());
+        System.exit(1);
+      }
+    }
+
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".txt"));
+    if (files == null) {
+      System.err.println("Not a directory: " + directory);
+      System.exit(1);
+    }
+    Arrays.sort(files);
+
+    List<Result> results = new BatchSolver(options, threads, timeout).solveAll(files);
+
+    if (output == null) {
+      write(results, format, System.out);
+    } else {
+      try (PrintStream out = new PrintStream(output, "UTF-8")) {
+        write(results, format, out);
+      }
+    }
+
+    System.exit(0);
+  }
+
+  private static void usage() {
+    System.err.println("Usage: BatchSolver [directory] [--threads n] [--timeout ms] "
+        + "[--format csv|json] [--out file] [--engine name] [--cache file]");
+    System.exit(1);
+  }
+
+  public enum Status {
+    SOLVED, UNSOLVED, TIMEOUT, ERROR
+  }
+
+  public static class Result {
+    public final String level;
+    public final Status status;
+    public final int length;
+    public final long wallMillis;
+    public final long nodes;
+    public final long peakHeapBytes;
+
+    public Result(String level, Status status, int length, long wallMillis, long nodes, long peakHeapBytes) {
+      this.level = level;
+      this.status = status;
+      this.length = length;
+      this.wallMillis = wallMillis;
+      this.nodes = nodes;
+      this.peakHeapBytes = peakHeapBytes;
+    }
+  }
+
+  private final SolverOptions options;
+  private final int threads;
+  private final long timeout;
+
+  public BatchSolver(SolverOptions options, int threads, long timeout) {
+    this.options = options;
+    this.threads = threads;
+    this.timeout = timeout;
+  }
+
+  public List<Result> solveAll(File[] files) throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+      Thread thread = new Thread(task, "batch-solver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "batch-timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    List<Future<Result>> pending = new ArrayList<>();
+    List<Result> results = new ArrayList<>();
+
+    for (File file : files) {
+      pending.add(pool.submit(() -> solve(file, timer, memory)));
+    }
+
+    try {
+      for (int i = 0; i < files.length; i++) {
+        try {
+          results.add(pending.get(i).get());
+        } catch (ExecutionException ex) {
+          ex.getCause().printStackTrace(System.err);
+          results.add(new Result(levelName(files[i]), Status.ERROR, -1, 0, 0, 0));
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+      timer.shutdownNow();
+    }
+
+    return results;
+  }
+
+  private Result solve(File file, ScheduledExecutorService timer, MemoryMXBean memory) {
+    String name = levelName(file);
+    MapData mapData = new FileReader().readFile(file);
+    if (mapData == null) {
+      return new Result(name, Status.ERROR, -1, 0, 0, 0);
+    }
+
+    char[][] map = mapData.mapLayer();
+    char[][] items = mapData.itemsLayer();
+
+    SolveTask task = new SokoBot(options).task(mapData.columns, mapData.rows, map, items, null);
+    long[] peak = { memory.getHeapMemoryUsage().getUsed() };
+
+    // Sample the heap while the level runs, and cancel it once its time is up
+    Future<?> sampler = timer.scheduleAtFixedRate(() -> {
+      synchronized (peak) {
+        peak[0] = Math.max(peak[0], memory.getHeapMemoryUsage().getUsed());
+      }
+    }, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    Future<?> deadline = timer.schedule(() -> task.cancel(true), timeout, TimeUnit.MILLISECONDS);
+
+    long start = System.nanoTime();
+    task.run();
+    long wallMillis = (System.nanoTime() - start) / 1000000;
+
+    deadline.cancel(false);
+    sampler.cancel(false);
+
+    Status status;
+    int length = -1;
+    try {
+      String solution = task.join();
+      status = solution.isEmpty() ? Status.UNSOLVED : Status.SOLVED;
+      length = solution.isEmpty() ? -1 : solution.length();
+    } catch (CancellationException ex) {
+      status = Status.TIMEOUT;
+    } catch (RuntimeException ex) {
+      ex.printStackTrace(System.err);
+      status = Status.ERROR;
+    }
+
+    long peakHeapBytes;
+    synchronized (peak) {
+      peakHeapBytes = Math.max(peak[0], memory.getHeapMemoryUsage().getUsed());
+    }
+
+    return new Result(name, status, length, wallMillis, task.getMonitor().snapshot().getExpanded(),
+        peakHeapBytes);
+  }
+
+  private static String levelName(File file) {
+    String name = file.getName();
+    return name.substring(0, name.length() - ".txt".length());
+  }
+
+  public static void write(List<Result> results, String format, PrintStream out) {
+    if (format.equals("json")) {
+      out.println("[");
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i);
+        out.printf("  {\"level\": \"%s\", \"status\": \"%s\", \"length\": %d, \"wallMillis\": %d, "
+            + "\"nodes\": %d, \"peakHeapBytes\": %d}%s%n",
+            result.level.replace("\\", "\\\\").replace("\"", "\\\""), result.status, result.length,
+            result.wallMillis, result.nodes, result.peakHeapBytes, i < results.size() - 1 ? "," : "");
+      }
+      out.println("]");
+    } else {
+      out.println("level,status,length,wall_ms,nodes,peak_heap_bytes");
+      for (Result result : results) {
+        out.printf("%s,%s,%d,%d,%d,%d%n", result.level, result.status, result.length,
+            result.wallMillis, result.nodes, result.peakHeapBytes);
+      }
+    }
+  }
+}
@@ -5,6 +5,10 @@ import java.util.Scanner;
 
 public class FileReader {
   public MapData readFile(String keyword) {
+    return readFile(new File("maps/" + keyword + ".txt"));
+  }
+
+  public MapData readFile(File file) {
     int rows = 0;
     int columns = 0;
     char tiles[][] = new char[100][100];
@@ -15,7 +19,6 @@ public class FileReader {
     }
 
     try {
-      File file = new File("maps/" + keyword + ".txt");
       Scanner scanner = new Scanner(file);
       while (scanner.hasNext()) {
         String nextLine = scanner.nextLine();
@@ -5,6 +5,30 @@ public class MapData {
   public int rows;
   public int columns;
 
+  // The walls and goals the solver and the game keep apart from what moves
+  public char[][] mapLayer() {
+    char[][] map = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        char tile = tiles[i][j];
+        map[i][j] = tile == '#' ? '#' : (tile == '.' || tile == '+' || tile == '*') ? '.' : ' ';
+      }
+    }
+    return map;
+  }
+
+  // The player and the crates, with every other cell blank
+  public char[][] itemsLayer() {
+    char[][] items = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        char tile = tiles[i][j];
+        items[i][j] = (tile == '@' || tile == '+') ? '@' : (tile == '$' || tile == '*') ? '$' : ' ';
+      }
+    }
+    return items;
+  }
+
   public void print() {
     for (int i = 0; i < rows; i++) {
       for (int j = 0; j < columns; j++) {
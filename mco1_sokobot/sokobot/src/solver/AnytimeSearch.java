@@ -0,0 +1,218 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Anytime weighted A* over crate pushes, in the style of ARA*. The first pass
+ * uses a high heuristic weight to find some solution quickly, and every later
+ * pass lowers the weight to look for one with fewer pushes, until the weight
+ * reaches 1, the passes run out of states, or the deadline hits. The best
+ * solution found so far is returned in every case.
+ *
+ * Passes reuse the search data of the ones before: the open list is kept and
+ * only re-sorted for the new weight, the fewest pushes each state was reached
+ * with are remembered, and states reached with fewer pushes after they were
+ * expanded are set aside and reopened by the next pass. Nodes that cannot beat
+ * the best solution even by the admissible estimate are dropped. Costs count
+ * every push a macro push makes, not just the one step it takes.
+ */
+public class AnytimeSearch {
+    private static final int SCALE = 4;             // Weights are given in quarters
+    private static final int[] WEIGHTS = {8, 6, 5, 4}; // Weight of each pass in quarters: 2, 1.5, 1.25, 1
+
+    private final State initialState;       // State the level starts in
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final ProgressCounter progress; // Cancellation check and expansion count
+    private final SolverOptions options;    // Open list, patterns and capacity to use
+    private final long deadline;            // System.nanoTime() at which the best solution is returned
+
+    /**
+     * Creates an anytime search for a level.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param options       Open list, pattern learning and capacity to use
+     * @param deadline      Value of System.nanoTime() at which to stop
+     * @param progress      Cancellation check and counter of the expansions
+     */
+    AnytimeSearch(State initialState, boolean[] deadSquares, SolverOptions options, long deadline,
+            ProgressCounter progress) {
+        this.initialState = initialState;
+        this.deadSquares = deadSquares;
+        this.progress = progress;
+        this.options = options;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Runs passes with falling weights until the deadline.
+     *
+     * @return  The best move string found, empty if none was found in time
+     */
+    public String solve() {
+        PushExpander expander = new PushExpander(initialState, deadSquares, options.isLearnPatterns());
+        Map<State, PushNode> bestNodes = new HashMap<>();   // Node with the fewest pushes per state
+        List<PushNode> open = new ArrayList<>();            // Open nodes carried over between passes
+        List<PushNode> inconsistent = new ArrayList<>();    // Expanded states later reached with fewer pushes
+        Set<State> closed = new HashSet<>();                // States expanded in the current pass
+        PushNode incumbent = null;                          // Best goal node so far
+        int childCount, pushes;
+
+        State root = expander.normalize(initialState);
+        int heuristic = expander.estimate(root);
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        PushNode start = new PushNode(root, heuristic);
+        bestNodes.put(root, start);
+        open.add(start);
+
+        for (int weight : WEIGHTS) {
+            Frontier queue = options.getFrontier().create();
+            PushNode found = null;
+
+            // Re-sort what is left for the new weight, dropping stale and hopeless nodes
+            open.addAll(inconsistent);
+            inconsistent.clear();
+            closed.clear();
+
+            for (PushNode node : open) {
+                if (bestNodes.get(node.state) == node && canImprove(node.pushes, node.heuristic, incumbent)) {
+                    node.cost = cost(node.pushes, node.heuristic, weight);
+                    queue.add(node);
+                }
+            }
+            open.clear();
+
+            while (!queue.isEmpty()) {
+                if (System.nanoTime() >= deadline || progress.isCancelled())
+                    return path(expander, incumbent);
+
+                if (bestNodes.size() >= options.getVisitedCapacity())
+                    return path(expander, incumbent);   // Out of room for new states
+
+                PushNode current = (PushNode) queue.poll();    // Get node with the lowest cost
+
+                if (bestNodes.get(current.state) != current
+                    || !canImprove(current.pushes, current.heuristic, incumbent))
+                    continue;                   // Reached with fewer pushes since, or cannot win
+
+                if (current.state.isGoalState()) {
+                    found = current;
+                    break;
+                }
+
+                closed.add(current.state);
+                progress.expanded(current.heuristic, queue.size());
+                childCount = expander.expand(current.state, null);
+
+                for (int i = 0; i < childCount; i++) {
+                    State child = expander.child(i);
+                    PushNode known = bestNodes.get(child);
+                    pushes = current.pushes + expander.pushes(i);
+
+                    if (known != null && known.pushes <= pushes)
+                        continue;
+                    if (!canImprove(pushes, expander.heuristic(i), incumbent))
+                        continue;
+
+                    PushNode node = new PushNode(child, current, expander.move(i), expander.heuristic(i), pushes);
+                    node.cost = cost(pushes, node.heuristic, weight);
+                    bestNodes.put(child, node);
+
+                    if (closed.contains(child))
+                        inconsistent.add(node);
+                    else
+                        queue.add(node);
+                }
+            }
+
+            if (found == null && inconsistent.isEmpty())
+                break;                          // Nothing shorter than the incumbent is left
+
+            if (found != null)
+                incumbent = found;
+
+            // Keep the unexpanded nodes for the next pass
+            while (!queue.isEmpty())
+                open.add((PushNode) queue.poll());
+        }
+
+        return path(expander, incumbent);
+    }
+
+    /**
+     * Checks if a node could still lead to a solution with fewer pushes than
+     * the incumbent, going by the admissible estimate.
+     *
+     * @param pushes    Number of pushes made to reach the node
+     * @param heuristic Estimated pushes left
+     * @param incumbent Best goal node so far, or null
+     * @return          True if the node is worth searching
+     */
+    private static boolean canImprove(int pushes, int heuristic, PushNode incumbent) {
+        return incumbent == null || pushes + heuristic < incumbent.pushes;
+    }
+
+    /**
+     * Computes the cost of a node with a weight given in quarters.
+     *
+     * @param pushes    Number of pushes made to reach the node
+     * @param heuristic Estimated pushes left
+     * @param weight    Heuristic weight times SCALE
+     * @return          Total cost, in quarters of a push
+     */
+    private static int cost(int pushes, int heuristic, int weight) {
+        return SCALE * pushes + weight * heuristic;
+    }
+
+    /**
+     * Rebuilds the move string of the incumbent.
+     *
+     * @param expander  Push generator whose flood fill rebuilds the walks
+     * @param incumbent Best goal node so far, or null
+     * @return          A string representing the sequence of moves, empty if none
+     */
+    private String path(PushExpander expander, PushNode incumbent) {
+        return incumbent == null ? "" : expander.rebuildPath(incumbent, initialState);
+    }
+
+    /**
+     * Search node that also counts the pushes made to reach it. A macro push
+     * is one step of the depth but can push the crate several times, and the
+     * passes compare solutions by pushes.
+     */
+    private static final class PushNode extends Node {
+        private final int pushes;   // Pushes made from the initial state
+
+        /**
+         * Constructs the root node.
+         *
+         * @param state     Initial state of the board
+         * @param heuristic Estimated pushes left
+         */
+        PushNode(State state, int heuristic) {
+            super(state, heuristic);
+            this.pushes = 0;
+        }
+
+        /**
+         * Constructs a child node.
+         *
+         * @param state     State of the board after the push
+         * @param parent    Node the push was made from
+         * @param move      Direction of the push
+         * @param heuristic Estimated pushes left
+         * @param pushes    Pushes made from the initial state
+         */
+        PushNode(State state, PushNode parent, Move move, int heuristic, int pushes) {
+            super(state, parent, move, heuristic);
+            this.pushes = pushes;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost perfect matching of crates to goals using the Hungarian
+ * algorithm over the goal distance tables. The sum of the matched distances
+ * is an admissible lower bound on the pushes still needed.
+ *
+ * A full solve keeps its dual potentials, so the cost after pushing a single
+ * crate can be found with one augmenting path (O(n^2)) instead of solving the
+ * whole matrix again (O(n^3)). Buffers are reused, so an instance must not be
+ * shared between threads.
+ */
+public class Assignment {
+    public static final int INFEASIBLE = 1_000_000;  // Cost of a crate that cannot reach a goal
+
+    private final int[][] distances;    // Distance tables per goal index, indexed by cell
+    private final int columns;          // Number of goals
+    private int rows;                   // Number of crates in the last full solve
+    private final int[] cells;          // Crate cell per row (1-based) of the last full solve
+    private final int[] u, v, p;        // Row potentials, column potentials, row matched to each column
+    private final int[] cu, cv, cp;     // Scratch copies used by incremental updates
+    private final int[] way;            // Previous column on the augmenting path
+    private final int[] minv;           // Smallest reduced cost seen per column
+    private final boolean[] used;       // Columns already on the alternating tree
+
+    /**
+     * Creates a matcher over the given distance tables.
+     *
+     * @param distances Distance tables per goal index, indexed by cell
+     */
+    public Assignment(int[][] distances) {
+        this.distances = distances;
+        this.columns = distances.length;
+        this.u = new int[columns + 1];
+        this.v = new int[columns + 1];
+        this.p = new int[columns + 1];
+        this.cu = new int[columns + 1];
+        this.cv = new int[columns + 1];
+        this.cp = new int[columns + 1];
+        this.way = new int[columns + 1];
+        this.minv = new int[columns + 1];
+        this.used = new boolean[columns + 1];
+        this.cells = new int[columns + 1];
+    }
+
+    /**
+     * Solves the matching for the given crates from scratch and keeps the
+     * result as the base for later incremental updates.
+     *
+     * @param crates    Cell indices of the crates
+     * @return          Total distance of the best matching, or INFEASIBLE or more
+     *                  if some crate cannot be matched to any goal
+     */
+    public int solve(int[] crates) {
+        rows = crates.length;
+
+        if (rows > columns)
+            return INFEASIBLE;
+
+        for (int i = 0; i < rows; i++)
+            cells[i + 1] = crates[i];
+
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(p, 0);
+
+        for (int i = 1; i <= rows; i++)
+            augment(i, cells, u, v, p);
+
+        return total(cells, p);
+    }
+
+    /**
+     * Computes the matching cost after one crate of the last solved set is
+     * pushed to another cell. The base solution is left untouched so sibling
+     * pushes can be evaluated from the same starting point.
+     *
+     * @param from  Cell the crate was pushed from
+     * @param to    Cell the crate was pushed to
+     * @return      Total distance of the best matching, or INFEASIBLE or more
+     *              if some crate cannot be matched to any goal
+     */
+    public int update(int from, int to) {
+        int row = 0;
+        int result;
+
+        for (int i = 1; i <= rows; i++) {
+            if (cells[i] == from)
+                row = i;
+        }
+
+        if (row == 0)
+            throw new IllegalArgumentException("No crate at cell " + from);
+
+        System.arraycopy(u, 0, cu, 0, columns + 1);
+        System.arraycopy(v, 0, cv, 0, columns + 1);
+        System.arraycopy(p, 0, cp, 0, columns + 1);
+        cells[row] = to;
+
+        if (rows == columns) {
+            // Free the pushed crate's goal and match it again. Column
+            // potentials never go above zero, so a zero row potential keeps
+            // every reduced cost non-negative.
+            for (int j = 1; j <= columns; j++) {
+                if (cp[j] == row)
+                    cp[j] = 0;
+            }
+
+            cu[row] = 0;
+            augment(row, cells, cu, cv, cp);
+        } else {
+            // With spare goals the shortcut is not exact, so solve again
+            Arrays.fill(cu, 0);
+            Arrays.fill(cv, 0);
+            Arrays.fill(cp, 0);
+
+            for (int i = 1; i <= rows; i++)
+                augment(i, cells, cu, cv, cp);
+        }
+
+        result = total(cells, cp);
+        cells[row] = from;
+
+        return result;
+    }
+
+    /**
+     * Returns the distance between a crate cell and a goal.
+     *
+     * @param cell  Cell index of the crate
+     * @param goal  1-based goal index
+     * @return      Distance, capped at INFEASIBLE when the goal cannot be reached
+     */
+    private int cost(int cell, int goal) {
+        int distance = distances[goal - 1][cell];
+
+        return distance >= INFEASIBLE ? INFEASIBLE : distance;
+    }
+
+    /**
+     * Adds one row to the matching along a shortest augmenting path,
+     * adjusting the potentials so matched pairs stay tight.
+     *
+     * @param row   1-based row to match
+     * @param cells Crate cell per row
+     * @param u     Row potentials
+     * @param v     Column potentials
+     * @param p     Row matched to each column, 0 if free
+     */
+    private void augment(int row, int[] cells, int[] u, int[] v, int[] p) {
+        int column = 0;
+        int next = 0;
+        int i, delta, current;
+
+        p[0] = row;
+        Arrays.fill(minv, Integer.MAX_VALUE);
+        Arrays.fill(used, false);
+
+        do {
+            used[column] = true;
+            i = p[column];
+            delta = Integer.MAX_VALUE;
+
+            for (int j = 1; j <= columns; j++) {
+                if (used[j])
+                    continue;
+
+                current = cost(cells[i], j) - u[i] - v[j];
+
+                if (current < minv[j]) {
+                    minv[j] = current;
+                    way[j] = column;
+                }
+
+                if (minv[j] < delta) {
+                    delta = minv[j];
+                    next = j;
+                }
+            }
+
+            for (int j = 0; j <= columns; j++) {
+                if (used[j]) {
+                    u[p[j]] += delta;
+                    v[j] -= delta;
+                } else
+                    minv[j] -= delta;
+            }
+
+            column = next;
+        } while (p[column] != 0);
+
+        // Flip the matched pairs along the path
+        do {
+            next = way[column];
+            p[column] = p[next];
+            column = next;
+        } while (column != 0);
+    }
+
+    /**
+     * Sums the distances of the matched pairs.
+     *
+     * @param cells Crate cell per row
+     * @param p     Row matched to each column, 0 if free
+     * @return      Total distance
+     */
+    private int total(int[] cells, int[] p) {
+        int sum = 0;
+
+        for (int j = 1; j <= columns; j++) {
+            if (p[j] != 0)
+                sum += cost(cells[p[j]], j);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,258 @@
+package solver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Push-level search run from both ends. The forward side is the usual A* over
+ * pushes from the initial state. The backward side starts from the solved
+ * state, once per area the player could be standing in, and pulls crates off
+ * the goals. A pull is the exact reverse of a push, so a backward path read in
+ * reverse is a valid sequence of pushes. The backward side is an A* as well,
+ * estimating with the best matching of crates to the cells the crates start
+ * on, using lone-crate push distances from each of those cells; crates pulled
+ * where no starting crate could ever be pushed are pruned by the same matching.
+ *
+ * Both sides store their nodes in a map keyed by state, whose hash is the
+ * Zobrist key, and every new state is looked up in the other side's map. The
+ * first state found on both sides joins the two halves into one solution. The
+ * forward side also keeps the usual closed set, so duplicates are dropped
+ * before their heuristic is computed. Each iteration expands the side with
+ * the smaller open list, so on levels where the goals are packed in a room
+ * the narrow backward side does most of the early work. Levels with more
+ * goals than crates have many solved states, and are searched forward only.
+ */
+public class BidirectionalSearch {
+    private static final Move[] MOVES = Move.values();
+
+    private final State initialState;       // State the level starts in
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final ProgressCounter progress; // Cancellation check and expansion count
+    private final SolverOptions options;    // Open list, weight and capacity of the search
+    private final Reachability reach;       // Flood fill used for the pulls
+    private final Assignment backwardAssignment; // Matching of crates to their starting cells
+    private final int[] pulls;              // Legal pulls of the state being expanded
+
+    /**
+     * Creates a bidirectional search for a level.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param options       Open list, weight and closed set capacity to use
+     * @param progress      Cancellation check and counter of the expansions
+     */
+    BidirectionalSearch(State initialState, boolean[] deadSquares, SolverOptions options,
+            ProgressCounter progress) {
+        char[][] mapData = initialState.getMap();
+
+        this.initialState = initialState;
+        this.deadSquares = deadSquares;
+        this.progress = progress;
+        this.options = options;
+        this.reach = new Reachability(mapData, initialState.getWidth(), mapData.length);
+        this.backwardAssignment = new Assignment(startDistances(initialState));
+        this.pulls = new int[initialState.getCrates().length * MOVES.length];
+    }
+
+    /**
+     * Runs both sides until they meet, the forward side reaches a goal on its
+     * own, or the forward open list runs empty.
+     *
+     * @return  A string representing the sequence of moves, empty if none
+     */
+    public String solve() {
+        PushExpander expander = new PushExpander(initialState, deadSquares, options.isLearnPatterns());
+        Frontier forwardQueue = options.getFrontier().create();
+        Frontier backwardQueue = options.getFrontier().create();
+        VisitedSet forwardSeen = options.getVisited().create(options.getVisitedCapacity());
+        Map<State, Node> forward = new HashMap<>();
+        Map<State, Node> backward = new HashMap<>();
+        Node[] meeting = new Node[2];       // Forward and backward node of the shared state
+
+        State root = expander.normalize(initialState);
+        int heuristic = expander.estimate(root);
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        Node start = new Node(root, heuristic, options.getWeight());
+        forwardSeen.add(root);
+        forward.put(root, start);
+        forwardQueue.add(start);
+
+        if (initialState.getCrates().length == initialState.getGoals().length)
+            addSolvedStates(backward, backwardQueue);
+
+        if (backward.containsKey(root))
+            return join(expander, start, backward.get(root));
+
+        while (!forwardQueue.isEmpty()) {
+            if (progress.isCancelled())
+                return "";                      // Cancelled, e.g. by a faster search
+
+            if (forwardSeen.isFull() || forward.size() + backward.size() >= options.getVisitedCapacity())
+                return "";                      // Out of room for new states, give up
+
+            if (!backwardQueue.isEmpty() && backwardQueue.size() <= forwardQueue.size()) {
+                if (expandBackward(backwardQueue, forward, backward, meeting))
+                    return join(expander, meeting[0], meeting[1]);
+                continue;
+            }
+
+            Node current = forwardQueue.poll(); // Get node with the lowest cost
+            progress.expanded(current.heuristic, forwardQueue.size() + backwardQueue.size());
+
+            if (current.state.isGoalState())    // Reached a goal without meeting
+                return expander.rebuildPath(current, initialState);
+
+            int childCount = expander.expand(current.state, forwardSeen);
+
+            for (int i = 0; i < childCount; i++) {
+                State child = expander.child(i);
+                Node node = new Node(child, current, expander.move(i), expander.heuristic(i), options.getWeight());
+                Node other = backward.get(child);
+
+                if (other != null)
+                    return join(expander, node, other);
+
+                forwardSeen.add(child);
+                forward.put(child, node);
+                forwardQueue.add(node);
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * Seeds the backward side with the solved state, once for every separate
+     * area of free cells the player could have finished in.
+     *
+     * @param backward      Backward nodes by state
+     * @param backwardQueue Backward open list
+     */
+    private void addSolvedStates(Map<State, Node> backward, Frontier backwardQueue) {
+        char[][] map = initialState.getMap();
+        int width = initialState.getWidth();
+        boolean[] covered = new boolean[width * map.length];
+        State solved = initialState.solved(initialState.getGoals()[0]);
+        int heuristic = backwardAssignment.solve(solved.getCrates());
+
+        if (heuristic >= Assignment.INFEASIBLE)
+            return;                         // Some goal cannot be reached from any start
+
+        for (int cell = 0; cell < covered.length; cell++) {
+            if (covered[cell] || map[cell / width][cell % width] == '#' || solved.hasCrateAt(cell))
+                continue;
+
+            State root = solved.moveTo(reach.fill(solved, cell));
+
+            for (int other = cell; other < covered.length; other++)
+                covered[other] |= reach.isReachable(other);
+
+            Node node = new Node(root, heuristic, options.getWeight());
+            backward.put(root, node);
+            backwardQueue.add(node);
+        }
+    }
+
+    /**
+     * Expands the best backward node by every pull the player can make.
+     *
+     * @param backwardQueue Backward open list
+     * @param forward       Forward nodes by state
+     * @param backward      Backward nodes by state
+     * @param meeting       Receives the forward and backward node if the sides meet
+     * @return              True if a pulled state was already reached forward
+     */
+    private boolean expandBackward(Frontier backwardQueue, Map<State, Node> forward,
+                                   Map<State, Node> backward, Node[] meeting) {
+        Node current = backwardQueue.poll();
+        progress.expanded(current.heuristic, backwardQueue.size());
+        int[] crates = current.state.getCrates();
+        int pullCount = 0;
+        int crate, front, behind, heuristic;
+
+        // The player stands in front of the crate and steps back, so both cells must be free
+        reach.fill(current.state, current.state.getPlayer());
+
+        for (int i = 0; i < crates.length; i++) {
+            for (Move move : MOVES) {
+                front = reach.neighbour(crates[i], move.opposite());
+                behind = front < 0 ? -1 : reach.neighbour(front, move.opposite());
+
+                if (behind >= 0 && reach.isReachable(front) && !current.state.hasCrateAt(behind))
+                    pulls[pullCount++] = i * MOVES.length + move.ordinal();
+            }
+        }
+
+        backwardAssignment.solve(crates);
+
+        for (int p = 0; p < pullCount; p++) {
+            Move move = MOVES[pulls[p] % MOVES.length];
+            crate = crates[pulls[p] / MOVES.length];
+            front = reach.neighbour(crate, move.opposite());
+            behind = reach.neighbour(front, move.opposite());
+
+            State pulled = current.state.pushTo(behind, crate, front);
+            State previous = pulled.moveTo(reach.fill(pulled, behind));
+
+            if (backward.containsKey(previous))
+                continue;
+
+            heuristic = backwardAssignment.update(crate, front);
+            if (heuristic >= Assignment.INFEASIBLE)   // No starting crate can get here
+                continue;
+
+            // Stored with the direction of the push that undoes this pull
+            Node node = new Node(previous, current, move, heuristic, options.getWeight());
+            Node other = forward.get(previous);
+
+            if (other != null) {
+                meeting[0] = other;
+                meeting[1] = node;
+                return true;
+            }
+
+            backward.put(previous, node);
+            backwardQueue.add(node);
+        }
+
+        return false;
+    }
+
+    /**
+     * Joins a forward path and a backward path that end in the same state
+     * into one chain of pushes, and turns it into a move string.
+     *
+     * @param expander      Push generator whose flood fill rebuilds the walks
+     * @param forwardNode   Forward node of the shared state
+     * @param backwardNode  Backward node of the shared state
+     * @return              A string representing the sequence of moves
+     */
+    private String join(PushExpander expander, Node forwardNode, Node backwardNode) {
+        Node current = forwardNode;
+
+        for (Node node = backwardNode; node.parent != null; node = node.parent)
+            current = new Node(node.parent.state, current, MOVES[node.move], 0);
+
+        return expander.rebuildPath(current, initialState);
+    }
+
+    /**
+     * Computes the lone-crate push distances from the cell of each crate of
+     * the initial state, indexed the way {@link Assignment} expects.
+     *
+     * @param initialState  State the level starts in
+     * @return              Push-distance tables per starting crate, indexed by cell
+     */
+    private static int[][] startDistances(State initialState) {
+        char[][] mapData = initialState.getMap();
+        int[] crates = initialState.getCrates();
+        int[][] tables = new int[crates.length][];
+
+        for (int i = 0; i < crates.length; i++)
+            tables[i] = PullDistances.fromStart(crates[i], mapData, initialState.getWidth(), mapData.length);
+
+        return tables;
+    }
+}
@@ -0,0 +1,104 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Open list made of buckets indexed by integer cost. Within one cost, nodes
+ * are kept in sub-buckets by heuristic so the node closest to the goal comes
+ * out first, and the most recently added node wins the remaining ties. Adding
+ * is O(1), and polling is O(1) apart from moving the cursor past buckets that
+ * ran empty.
+ */
+public class BucketFrontier implements Frontier {
+    private Node[][][] buckets;     // Stacks of nodes per cost, then per heuristic
+    private int[][] sizes;          // Stack size per cost, then per heuristic
+    private int[] counts;           // Number of nodes per cost
+    private int[] lowestHeuristic;  // Lowest heuristic that may hold a node, per cost
+    private int lowestCost;         // Lowest cost that may hold a node
+    private int size;               // Total number of nodes
+
+    /**
+     * Creates an empty open list.
+     */
+    public BucketFrontier() {
+        this.buckets = new Node[64][][];
+        this.sizes = new int[64][];
+        this.counts = new int[64];
+        this.lowestHeuristic = new int[64];
+        this.lowestCost = Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void add(Node node) {
+        int cost = node.cost;
+        int heuristic = node.heuristic;
+
+        if (cost >= buckets.length) {
+            int length = Math.max(cost + 1, buckets.length * 2);
+            buckets = Arrays.copyOf(buckets, length);
+            sizes = Arrays.copyOf(sizes, length);
+            counts = Arrays.copyOf(counts, length);
+            lowestHeuristic = Arrays.copyOf(lowestHeuristic, length);
+        }
+
+        if (buckets[cost] == null) {
+            buckets[cost] = new Node[heuristic + 1][];
+            sizes[cost] = new int[heuristic + 1];
+        } else if (heuristic >= buckets[cost].length) {
+            int length = Math.max(heuristic + 1, buckets[cost].length * 2);
+            buckets[cost] = Arrays.copyOf(buckets[cost], length);
+            sizes[cost] = Arrays.copyOf(sizes[cost], length);
+        }
+
+        Node[] stack = buckets[cost][heuristic];
+        int top = sizes[cost][heuristic];
+
+        if (stack == null)
+            stack = buckets[cost][heuristic] = new Node[8];
+        else if (top == stack.length)
+            stack = buckets[cost][heuristic] = Arrays.copyOf(stack, top * 2);
+
+        stack[top] = node;
+        sizes[cost][heuristic] = top + 1;
+
+        if (counts[cost]++ == 0 || heuristic < lowestHeuristic[cost])
+            lowestHeuristic[cost] = heuristic;
+        if (cost < lowestCost)
+            lowestCost = cost;
+        size++;
+    }
+
+    @Override
+    public Node poll() {
+        if (size == 0)
+            return null;
+
+        while (counts[lowestCost] == 0)
+            lowestCost++;
+
+        int cost = lowestCost;
+        int heuristic = lowestHeuristic[cost];
+
+        while (sizes[cost][heuristic] == 0)
+            heuristic++;
+        lowestHeuristic[cost] = heuristic;
+
+        int top = --sizes[cost][heuristic];
+        Node node = buckets[cost][heuristic][top];
+        buckets[cost][heuristic][top] = null;
+
+        counts[cost]--;
+        size--;
+        return node;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
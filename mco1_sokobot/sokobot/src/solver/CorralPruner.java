@@ -0,0 +1,166 @@
+package solver;
+
+/**
+ * PI-corral pruning for the push-level search. A corral is an area the player
+ * cannot reach, fenced off by crates. It is a PI-corral when every push the
+ * player can make on its fence goes into the corral (I) and the player is
+ * already standing where those pushes are made (P). Crates elsewhere cannot
+ * change that, so if the corral still has work to do, every solution has to
+ * push into it eventually, and only those pushes need to be expanded.
+ *
+ * The pruner reads the marks left by the last {@link Reachability#fill} on the
+ * same state, and reuses its buffers, so an instance must not be shared
+ * between threads.
+ */
+public class CorralPruner {
+    private final Reachability reach;   // Flood fill of the player for the current state
+    private final boolean[] crateMap;   // Scratch crate lookup filled for each call
+    private final int[] labels;         // Corral number per cell, valid when its stamp matches
+    private final int[] stamps;         // Call number that labelled each cell
+    private final int[] queue;          // BFS queue of cell indices
+    private final boolean[] needsWork;  // Per corral, whether a crate or goal in it is unsolved
+    private final boolean[] isPi;       // Per corral, whether every push on its fence goes in
+    private final int[] inward;         // Per corral, number of legal pushes into it
+    private int stamp;                  // Current call number
+
+    /**
+     * Creates a pruner for a level.
+     *
+     * @param reach       Flood fill helper of the level, shared with the search
+     * @param cells       Number of cells of the level
+     * @param crateCount  Number of crates of the level
+     */
+    public CorralPruner(Reachability reach, int cells, int crateCount) {
+        this.reach = reach;
+        this.crateMap = new boolean[cells];
+        this.labels = new int[cells];
+        this.stamps = new int[cells];
+        this.queue = new int[cells];
+        this.needsWork = new boolean[crateCount];
+        this.isPi = new boolean[crateCount];
+        this.inward = new int[crateCount];
+    }
+
+    /**
+     * Drops every push that does not go into the smallest PI-corral of the
+     * state, if there is one. Pushes are encoded as crate index * 4 + move
+     * ordinal, the way the push-level search collects them.
+     *
+     * @param state     State being expanded, just flood filled by the reach helper
+     * @param pushes    Legal pushes of the state, compacted in place
+     * @param pushCount Number of pushes in the array
+     * @return          Number of pushes left
+     */
+    public int prune(State state, int[] pushes, int pushCount) {
+        int[] crates = state.getCrates();
+        int corrals = 0;
+        int best = -1;
+
+        for (int crate : crates)
+            crateMap[crate] = true;
+
+        stamp++;
+
+        // Label each unreachable area together with the crates fencing it
+        for (int crate : crates) {
+            if (stamps[crate] != stamp) {
+                needsWork[corrals] = label(state, crate, corrals);
+                isPi[corrals] = true;
+                inward[corrals] = 0;
+                corrals++;
+            }
+        }
+
+        for (int crate : crates)
+            check(crate);
+
+        for (int k = 0; k < corrals; k++) {
+            if (isPi[k] && needsWork[k] && inward[k] > 0
+                && (best < 0 || inward[k] < inward[best]))
+                best = k;
+        }
+
+        for (int crate : crates)
+            crateMap[crate] = false;
+
+        if (best < 0)
+            return pushCount;
+
+        // Keep only the pushes of crates on the chosen corral's fence
+        int kept = 0;
+        for (int i = 0; i < pushCount; i++) {
+            if (labels[crates[pushes[i] / 4]] == best)
+                pushes[kept++] = pushes[i];
+        }
+
+        return kept;
+    }
+
+    /**
+     * Labels the unreachable area around a crate, crossing other crates, so
+     * crates touching each other always end up in the same corral.
+     *
+     * @param state Current state
+     * @param start Crate to start from
+     * @param label Corral number to assign
+     * @return      True if the corral has a crate off goal or an empty goal
+     */
+    private boolean label(State state, int start, int label) {
+        int head = 0;
+        int tail = 0;
+        boolean needsWork = false;
+        int cell, next;
+
+        stamps[start] = stamp;
+        labels[start] = label;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            cell = queue[head++];
+
+            if (state.isGoal(cell) != crateMap[cell])
+                needsWork = true;
+
+            for (Move move : Move.values()) {
+                next = reach.neighbour(cell, move);
+
+                if (next >= 0 && stamps[next] != stamp && !reach.isReachable(next)) {
+                    stamps[next] = stamp;
+                    labels[next] = label;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return needsWork;
+    }
+
+    /**
+     * Checks the pushes the player can make on one crate and records whether
+     * they all lead into its corral. Cells behind or in front of the crate
+     * that hold other crates belong to the same corral, so they can only
+     * open up once the corral itself has been pushed into.
+     *
+     * @param crate     Cell index of the crate
+     */
+    private void check(int crate) {
+        int corral = labels[crate];
+        int behind, target;
+
+        for (Move move : Move.values()) {
+            behind = reach.neighbour(crate, move.opposite());
+            target = reach.neighbour(crate, move);
+
+            if (behind < 0 || !reach.isReachable(behind))
+                continue;                           // Wall behind, or only pushable from inside
+
+            if (target < 0 || crateMap[target])
+                continue;                           // Blocked by a wall or a crate of the corral
+
+            if (reach.isReachable(target))
+                isPi[corral] = false;               // Push along or out of the corral
+            else
+                inward[corral]++;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package solver;
+
+/**
+ * Detects deadlocks caused by the crate that was just pushed: landing on a
+ * dead square, or becoming frozen together with its neighbours. A crate is
+ * frozen when it can move along neither axis, because of walls, dead squares
+ * on both sides, or other crates that are frozen themselves. A frozen group
+ * is a deadlock as soon as one of its crates is not on a goal.
+ *
+ * Only the crates around the pushed one are visited, and the crate lookup is
+ * a scratch buffer reused between calls, so an instance must not be shared
+ * between threads.
+ */
+public class DeadlockDetector {
+    private static final int FREE = 0;          // Crate can still move along some axis
+    private static final int ON_GOALS = 1;      // Crate is frozen and so is everything it leans on, all on goals
+    private static final int OFF_GOAL = 2;      // Crate is frozen and it or a crate it leans on is off goal
+
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final Reachability reach;       // Neighbour table of the level
+    private final DeadlockPatterns patterns; // Learned deadlock patterns, null if disabled
+    private final boolean[] crateMap;       // Scratch crate lookup filled for each check
+    private final boolean[] asWall;         // Crates treated as walls while their neighbours are checked
+
+    /**
+     * Creates a detector for a level.
+     *
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param reach         Neighbour table of the level
+     * @param patterns      Store of learned deadlock patterns, or null to skip them
+     */
+    public DeadlockDetector(boolean[] deadSquares, Reachability reach, DeadlockPatterns patterns) {
+        this.deadSquares = deadSquares;
+        this.reach = reach;
+        this.patterns = patterns;
+        this.crateMap = new boolean[deadSquares.length];
+        this.asWall = new boolean[deadSquares.length];
+    }
+
+    /**
+     * Checks if a crate stands on a dead square.
+     *
+     * @param cell  Cell index of the crate
+     * @return      True if no goal can be reached from the cell
+     */
+    public boolean isDeadSquare(int cell) {
+        return deadSquares[cell];
+    }
+
+    /**
+     * Checks if the pushed crate completes a learned deadlock pattern, and
+     * otherwise tries to learn a new one from the crates around it.
+     *
+     * @param state     State after the push
+     * @param crate     Cell index the crate was pushed to
+     * @return          True if the crates around the pushed one cannot be solved
+     */
+    public boolean matchesPattern(State state, int crate) {
+        if (patterns == null)
+            return false;
+
+        return patterns.contains(state, crate) || patterns.learn(state, crate);
+    }
+
+    /**
+     * Checks if the crate that was just pushed froze a group of crates with
+     * at least one of them off goal.
+     *
+     * @param state     State after the push
+     * @param crate     Cell index the crate was pushed to
+     * @return          True if the state is a freeze deadlock
+     */
+    public boolean isFrozen(State state, int crate) {
+        int result;
+
+        for (int cell : state.getCrates())
+            crateMap[cell] = true;
+
+        result = freeze(state, crateMap, crate);
+
+        for (int cell : state.getCrates())
+            crateMap[cell] = false;
+
+        return result == OFF_GOAL;
+    }
+
+    /**
+     * Same check for a board kept as a crate lookup instead of a state, such
+     * as the mutable board of the IDA* search.
+     *
+     * @param level     Any state of the level, only used for its goals
+     * @param crateAt   Crate flags indexed by cell, after the push
+     * @param crate     Cell index the crate was pushed to
+     * @return          True if the board is a freeze deadlock
+     */
+    public boolean isFrozen(State level, boolean[] crateAt, int crate) {
+        return freeze(level, crateAt, crate) == OFF_GOAL;
+    }
+
+    /**
+     * Checks if a crate is frozen. While its neighbours are checked the crate
+     * is treated as a wall, which stops the recursion from going in circles.
+     *
+     * @param state     Current state
+     * @param crateAt   Crate flags indexed by cell
+     * @param crate     Cell index of the crate
+     * @return          FREE, ON_GOALS or OFF_GOAL
+     */
+    private int freeze(State state, boolean[] crateAt, int crate) {
+        int horizontal, vertical;
+
+        asWall[crate] = true;
+        horizontal = axis(state, crateAt, crate, Move.LEFT, Move.RIGHT);
+        vertical = horizontal == FREE ? FREE : axis(state, crateAt, crate, Move.UP, Move.DOWN);
+        asWall[crate] = false;          // Only a wall for the crates checked through it
+
+        if (vertical == FREE)
+            return FREE;
+
+        if (!state.isGoal(crate))
+            return OFF_GOAL;
+
+        return Math.max(horizontal, vertical);
+    }
+
+    /**
+     * Checks if a crate is blocked along one axis.
+     *
+     * @param state     Current state
+     * @param crateAt   Crate flags indexed by cell
+     * @param crate     Cell index of the crate
+     * @param first     Direction to one side of the axis
+     * @param second    Direction to the other side of the axis
+     * @return          FREE, ON_GOALS or OFF_GOAL
+     */
+    private int axis(State state, boolean[] crateAt, int crate, Move first, Move second) {
+        int a = reach.neighbour(crate, first);
+        int b = reach.neighbour(crate, second);
+        int result;
+
+        // A wall, or a crate already being treated as one, on either side
+        if (a < 0 || b < 0 || asWall[a] || asWall[b])
+            return ON_GOALS;
+
+        // The crate could move, but only onto dead squares
+        if (deadSquares[a] && deadSquares[b])
+            return ON_GOALS;
+
+        if (crateAt[a] && (result = freeze(state, crateAt, a)) != FREE)
+            return result;
+
+        if (crateAt[b] && (result = freeze(state, crateAt, b)) != FREE)
+            return result;
+
+        return FREE;
+    }
+}
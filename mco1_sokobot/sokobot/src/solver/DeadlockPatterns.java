@@ -0,0 +1,298 @@
+package solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deadlock patterns learned during the search. When a crate is pushed next to
+ * other crates, the small cluster it forms is taken off the board on its own
+ * and a bounded push search tries to bring just those crates to goals from
+ * every side the player could be on. If it cannot, no state holding those
+ * crates can be solved either, since other crates only get in the way, so the
+ * cluster is stored and every later state that contains it is pruned with a
+ * few lookups.
+ *
+ * Patterns are indexed under every cell they cover, so only the patterns
+ * touching the pushed crate are checked. The store keeps at most
+ * MAX_PATTERNS patterns and drops the oldest one first. Buffers are reused,
+ * so an instance must not be shared between threads.
+ */
+public class DeadlockPatterns {
+    public static final int MAX_PATTERNS = 1024;        // Patterns kept before the oldest is dropped
+    private static final int MAX_CRATES = 4;            // Largest cluster that is tested
+    private static final int NODE_LIMIT = 200;         // States a sub-search may visit before giving up
+    private static final int MAX_TRIED = 1 << 16;       // Clusters remembered as not proven dead
+
+    private final int width;                        // Width of the map
+    private final int height;                       // Height of the map
+    private final boolean[] deadSquares;            // Dead square flags indexed by cell
+    private final char[][] map;                     // 2D array representing the map
+    private final Reachability reach;               // Flood fill used by the sub-searches
+    private final List<List<int[]>> byCell;         // Patterns covering each cell
+    private final ArrayDeque<int[]> patterns;       // All patterns, oldest first
+    private final Set<Long> tried;                  // Clusters already searched without a proof
+
+    /**
+     * Creates an empty store for a level.
+     *
+     * @param mapData       2D char array representing the map
+     * @param width         Width of the map
+     * @param height        Height of the map
+     * @param deadSquares   Dead square flags indexed by cell
+     */
+    public DeadlockPatterns(char[][] mapData, int width, int height, boolean[] deadSquares) {
+        this.width = width;
+        this.height = height;
+        this.deadSquares = deadSquares;
+        this.map = mapData;
+        this.reach = new Reachability(mapData, width, height);
+        this.byCell = new ArrayList<>(width * height);
+        this.patterns = new ArrayDeque<>();
+        this.tried = new HashSet<>();
+
+        for (int i = 0; i < width * height; i++)
+            byCell.add(null);
+    }
+
+    /**
+     * Checks if the state contains a stored pattern that covers the pushed crate.
+     *
+     * @param state     State after the push
+     * @param crate     Cell index the crate was pushed to
+     * @return          True if a known deadlock pattern is present
+     */
+    public boolean contains(State state, int crate) {
+        List<int[]> candidates = byCell.get(crate);
+
+        if (candidates == null)
+            return false;
+
+        for (int[] pattern : candidates) {
+            if (matches(state, pattern))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Tests the cluster of crates around the pushed crate with a bounded sub-search
+     * and stores it as a pattern if it is proven unsolvable.
+     *
+     * @param state     State after the push
+     * @param crate     Cell index the crate was pushed to
+     * @return          True if the cluster was proven to be a deadlock
+     */
+    public boolean learn(State state, int crate) {
+        int[] cluster = cluster(state, crate);
+        long key;
+
+        if (cluster.length < 2 || width * height >= 1 << 16)
+            return false;
+
+        key = pack(cluster);
+        if (tried.contains(key))
+            return false;
+
+        if (isSolvable(cluster, state)) {
+            if (tried.size() >= MAX_TRIED)
+                tried.clear();
+            tried.add(key);
+            return false;
+        }
+
+        add(cluster);
+        return true;
+    }
+
+    /**
+     * Returns the number of patterns currently stored.
+     *
+     * @return Pattern count
+     */
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * Checks if every cell of a pattern holds a crate.
+     *
+     * @param state     Current state
+     * @param pattern   Sorted cell indices of the pattern
+     * @return          True if the state contains the pattern
+     */
+    private static boolean matches(State state, int[] pattern) {
+        for (int cell : pattern) {
+            if (!state.hasCrateAt(cell))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores a pattern, dropping the oldest one if the store is full.
+     *
+     * @param pattern Sorted cell indices of the pattern
+     */
+    private void add(int[] pattern) {
+        if (patterns.size() >= MAX_PATTERNS) {
+            int[] oldest = patterns.poll();
+
+            for (int cell : oldest)
+                byCell.get(cell).remove(oldest);
+        }
+
+        patterns.add(pattern);
+
+        for (int cell : pattern) {
+            if (byCell.get(cell) == null)
+                byCell.set(cell, new ArrayList<>(2));
+            byCell.get(cell).add(pattern);
+        }
+    }
+
+    /**
+     * Collects the crates touching the pushed crate, including diagonally,
+     * and the crates touching those, up to MAX_CRATES crates.
+     *
+     * @param state     Current state
+     * @param crate     Cell index of the pushed crate
+     * @return          Sorted cell indices of the cluster, empty if it is all on goals
+     */
+    private int[] cluster(State state, int crate) {
+        int[] cluster = new int[MAX_CRATES];
+        int size = 0;
+        int row, column, next;
+        boolean offGoal = false;
+
+        cluster[size++] = crate;
+
+        for (int i = 0; i < size && size < MAX_CRATES; i++) {
+            for (int dr = -1; dr <= 1 && size < MAX_CRATES; dr++) {
+                for (int dc = -1; dc <= 1 && size < MAX_CRATES; dc++) {
+                    row = cluster[i] / width + dr;
+                    column = cluster[i] % width + dc;
+                    next = row * width + column;
+
+                    if (row < 0 || row >= height || column < 0 || column >= width
+                        || !state.hasCrateAt(next) || contains(cluster, size, next))
+                        continue;
+
+                    cluster[size++] = next;
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++)
+            offGoal |= !state.isGoal(cluster[i]);
+
+        if (!offGoal)
+            return new int[0];
+
+        cluster = Arrays.copyOf(cluster, size);
+        Arrays.sort(cluster);
+        return cluster;
+    }
+
+    /**
+     * Runs a bounded push search over the cluster alone, starting once from
+     * each area the player could be in next to it.
+     *
+     * @param cluster   Sorted cell indices of the cluster
+     * @param state     State the cluster was taken from
+     * @return          True if some start reaches goals or the node limit is hit
+     */
+    private boolean isSolvable(int[] cluster, State state) {
+        Set<State> visited = new HashSet<>();
+        ArrayDeque<State> queue = new ArrayDeque<>();
+        State alone = state.at(cluster[0], cluster);
+        int start, target;
+
+        // Every player area touching a crate is a separate start
+        for (int crate : cluster) {
+            for (Move move : Move.values()) {
+                start = reach.neighbour(crate, move);
+
+                if (start < 0 || alone.hasCrateAt(start))
+                    continue;
+
+                State root = alone.moveTo(reach.fill(alone, start));
+                if (visited.add(root))
+                    queue.add(root);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            State current = queue.poll();
+
+            if (current.isGoalState() || visited.size() > NODE_LIMIT)
+                return true;
+
+            reach.fill(current, current.getPlayer());
+            int[] pushes = new int[current.getCrates().length * 4];
+            int pushCount = 0;
+
+            for (int i = 0; i < current.getCrates().length; i++) {
+                int crate = current.getCrates()[i];
+
+                for (Move move : Move.values()) {
+                    target = reach.neighbour(crate, move);
+
+                    if (target >= 0 && !current.hasCrateAt(target) && !deadSquares[target]
+                        && reach.isReachable(reach.neighbour(crate, move.opposite())))
+                        pushes[pushCount++] = i * 4 + move.ordinal();
+                }
+            }
+
+            for (int p = 0; p < pushCount; p++) {
+                int crate = current.getCrates()[pushes[p] / 4];
+                target = reach.neighbour(crate, Move.values()[pushes[p] % 4]);
+
+                State pushed = current.pushTo(crate, crate, target);
+                State next = pushed.moveTo(reach.fill(pushed, crate));
+
+                if (visited.add(next))
+                    queue.add(next);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a cell is among the first entries of an array.
+     *
+     * @param cells Array of cell indices
+     * @param size  Number of entries in use
+     * @param cell  Cell index to look for
+     * @return      True if the cell is present
+     */
+    private static boolean contains(int[] cells, int size, int cell) {
+        for (int i = 0; i < size; i++) {
+            if (cells[i] == cell)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Packs up to four cell indices below 2^16 - 1 into one exact key.
+     *
+     * @param cluster   Sorted cell indices
+     * @return          Packed key
+     */
+    private static long pack(int[] cluster) {
+        long key = 0;
+
+        for (int cell : cluster)
+            key = (key << 16) | (cell + 1);
+
+        return key;
+    }
+}
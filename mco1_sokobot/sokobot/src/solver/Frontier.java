@@ -0,0 +1,34 @@
+package solver;
+
+/**
+ * Open list of the A* search: hands out the node with the lowest cost first.
+ */
+public interface Frontier {
+    /**
+     * Adds a node to the open list.
+     *
+     * @param node  Node to add
+     */
+    void add(Node node);
+
+    /**
+     * Removes and returns the node with the lowest cost.
+     *
+     * @return  Lowest cost node, or null if the open list is empty
+     */
+    Node poll();
+
+    /**
+     * Checks if the open list has no nodes left.
+     *
+     * @return  True if empty, false otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns the number of nodes in the open list.
+     *
+     * @return  Node count
+     */
+    int size();
+}
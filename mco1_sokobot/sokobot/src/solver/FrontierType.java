@@ -0,0 +1,22 @@
+package solver;
+
+/**
+ * Enum representing the open list implementations the A* search can use.
+ */
+public enum FrontierType {
+	HEAP,		// Binary heap ordered by cost, O(log n) per operation
+	BUCKETS;	// Buckets indexed by integer cost, O(1) per operation
+
+	/**
+     * Creates an empty open list of this type.
+     *
+     * @return New open list
+     */
+	public Frontier create() {
+		switch (this) {
+			case HEAP -> { return new HeapFrontier(); }
+			case BUCKETS -> { return new BucketFrontier(); }
+			default -> throw new IllegalStateException("Unhandled frontier: " + this);
+		}
+  	}
+}
@@ -0,0 +1,39 @@
+package solver;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Open list backed by a binary heap ordered by total cost. Each add and poll
+ * is O(log n).
+ */
+public class HeapFrontier implements Frontier {
+    private final PriorityQueue<Node> queue;    // Nodes ordered by their cost
+
+    /**
+     * Creates an empty heap.
+     */
+    public HeapFrontier() {
+        this.queue = new PriorityQueue<>(Comparator.comparingInt(Node::getCost));
+    }
+
+    @Override
+    public void add(Node node) {
+        queue.add(node);
+    }
+
+    @Override
+    public Node poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
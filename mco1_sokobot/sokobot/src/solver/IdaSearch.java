@@ -0,0 +1,299 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Iterative deepening A* over crate pushes. Each iteration is a depth-first
+ * search that cuts off every node whose cost exceeds a threshold, and the
+ * next iteration raises the threshold to the lowest cost that was cut off.
+ *
+ * The search works on a single mutable board: a push is applied to the crate
+ * array, crate lookup and Zobrist key in place and undone on the way back, so
+ * nothing is allocated per node. Transpositions are caught by a fixed-size
+ * {@link TranspositionTable}, and the only other memory used grows with the
+ * solution length, so the footprint stays flat however long the search runs.
+ * Deadlocks are pruned with dead squares, freeze checks and the matching;
+ * learned patterns and PI-corrals are left out since they work on states.
+ */
+public class IdaSearch {
+    private static final Move[] MOVES = Move.values();
+    private static final int FOUND = -1;            // Search result when a goal was reached
+    private static final int CANCELLED = -2;        // Search result when the thread was interrupted
+
+    private final State initialState;       // State the level starts in
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final ProgressCounter progress; // Cancellation check and expansion count
+    private final int weight;               // Factor the heuristic is multiplied by in node costs
+    private final Reachability reach;       // Neighbour table of the level
+    private final DeadlockDetector deadlocks; // Freeze checks on the mutable board
+    private final Assignment assignment;    // Incremental Hungarian heuristic
+    private final TranspositionTable table; // Fewest pushes each state was reached with
+    private final Zobrist zobrist;          // Keys of the level
+    private final int[] crates;             // Crate cells of the board, in a fixed order
+    private final boolean[] crateAt;        // Crate flags of the board indexed by cell
+    private final int[] marks;              // Stamp of the last fill that reached each cell
+    private final int[] queue;              // BFS queue of the flood fill
+    private int[][] pushes;                 // Pushes to try per depth, crate index * 4 + move
+    private int[][] estimates;              // Heuristic after each of those pushes
+    private int[] pathFrom;                 // Cell the crate was pushed from per depth
+    private byte[] pathMoves;               // Direction of the push per depth
+    private long crateKey;                  // Zobrist key of the crates on the board
+    private int stamp;                      // Current fill number
+    private int threshold;                  // Highest cost searched in this iteration
+    private int iteration;                  // Number of the current iteration
+    private int solutionDepth;              // Number of pushes of the solution found
+
+    /**
+     * Creates an IDA* search for a level.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param options       Weight and transposition table size to use
+     * @param progress      Cancellation check and counter of the expansions
+     */
+    IdaSearch(State initialState, boolean[] deadSquares, SolverOptions options, ProgressCounter progress) {
+        char[][] mapData = initialState.getMap();
+        int cells = initialState.getWidth() * mapData.length;
+
+        this.initialState = initialState;
+        this.deadSquares = deadSquares;
+        this.progress = progress;
+        this.weight = options.getWeight();
+        this.reach = new Reachability(mapData, initialState.getWidth(), mapData.length);
+        this.deadlocks = new DeadlockDetector(deadSquares, reach, null);
+        this.assignment = new Assignment(initialState.getLevel().getDistances());
+        this.table = new TranspositionTable(options.getTableSize());
+        this.zobrist = initialState.getLevel().getZobrist();
+        this.crates = initialState.getCrates().clone();
+        this.crateAt = new boolean[cells];
+        this.marks = new int[cells];
+        this.queue = new int[cells];
+        this.pushes = new int[64][];
+        this.estimates = new int[64][];
+        this.pathFrom = new int[64];
+        this.pathMoves = new byte[64];
+        this.crateKey = zobrist.crates(crates);
+
+        for (int crate : crates)
+            crateAt[crate] = true;
+    }
+
+    /**
+     * Runs iterations with a rising threshold until one reaches a goal.
+     *
+     * @return  A string representing the sequence of moves, empty if none
+     */
+    public String solve() {
+        int heuristic = assignment.solve(crates);
+        int result;
+
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        threshold = Node.computeCost(0, heuristic, weight);
+
+        while (true) {
+            iteration++;
+            result = search(initialState.getPlayer(), 0, heuristic);
+
+            if (result == FOUND)
+                return rebuildPath();
+            if (result == CANCELLED || result == Integer.MAX_VALUE)
+                return "";              // Cancelled, or every branch ended in a deadlock
+
+            threshold = result;
+        }
+    }
+
+    /**
+     * Searches the subtree below the board as it is now.
+     *
+     * @param player    Cell of the player
+     * @param depth     Number of pushes made so far
+     * @param heuristic Heuristic of the board
+     * @return          FOUND, CANCELLED, or the lowest cost cut off in the subtree
+     */
+    private int search(int player, int depth, int heuristic) {
+        int cost = Node.computeCost(depth, heuristic, weight);
+        int lowest = Integer.MAX_VALUE;
+        int count, result, crate, target;
+
+        if (cost > threshold)
+            return cost;
+
+        if (heuristic == 0) {           // Every crate stands on a goal
+            solutionDepth = depth;
+            return FOUND;
+        }
+
+        if (progress.isCancelled())
+            return CANCELLED;
+
+        long key = crateKey ^ zobrist.player(fill(player));
+
+        if (table.isDominated(key, depth, iteration))
+            return Integer.MAX_VALUE;
+        table.store(key, depth, iteration);
+        progress.expanded(heuristic, 0);       // No open list, the path is on the stack
+
+        count = collectPushes(depth);
+
+        for (int p = 0; p < count; p++) {
+            int i = pushes[depth][p] / MOVES.length;
+            Move move = MOVES[pushes[depth][p] % MOVES.length];
+
+            crate = crates[i];
+            target = reach.neighbour(crate, move);
+
+            pathFrom[depth] = crate;
+            pathMoves[depth] = (byte) move.ordinal();
+
+            apply(i, crate, target);
+            result = search(crate, depth + 1, estimates[depth][p]);
+            apply(i, target, crate);    // Undo
+
+            if (result == FOUND || result == CANCELLED)
+                return result;
+
+            lowest = Math.min(lowest, result);
+        }
+
+        return lowest;
+    }
+
+    /**
+     * Collects the pushes of the board that do not cause a deadlock, using
+     * the flood fill just made, sorted by the heuristic they lead to.
+     *
+     * @param depth Number of pushes made so far, which picks the buffers
+     * @return      Number of pushes
+     */
+    private int collectPushes(int depth) {
+        int count = 0;
+        int crate, target, behind, heuristic;
+
+        if (depth >= pushes.length) {
+            pushes = Arrays.copyOf(pushes, depth * 2);
+            estimates = Arrays.copyOf(estimates, depth * 2);
+            pathFrom = Arrays.copyOf(pathFrom, depth * 2);
+            pathMoves = Arrays.copyOf(pathMoves, depth * 2);
+        }
+
+        if (pushes[depth] == null) {
+            pushes[depth] = new int[crates.length * MOVES.length];
+            estimates[depth] = new int[crates.length * MOVES.length];
+        }
+
+        int[] found = pushes[depth];
+        int[] costs = estimates[depth];
+
+        assignment.solve(crates);
+
+        for (int i = 0; i < crates.length; i++) {
+            crate = crates[i];
+
+            for (Move move : MOVES) {
+                target = reach.neighbour(crate, move);
+                behind = reach.neighbour(crate, move.opposite());
+
+                if (target < 0 || crateAt[target] || behind < 0 || marks[behind] != stamp
+                    || deadSquares[target])
+                    continue;
+
+                crateAt[crate] = false;
+                crateAt[target] = true;
+                boolean frozen = deadlocks.isFrozen(initialState, crateAt, target);
+                crateAt[target] = false;
+                crateAt[crate] = true;
+
+                if (frozen)
+                    continue;
+
+                heuristic = assignment.update(crate, target);
+                if (heuristic >= Assignment.INFEASIBLE)   // No matching left, so a deadlock
+                    continue;
+
+                // Insertion sort, lowest heuristic first
+                int at = count++;
+                while (at > 0 && costs[at - 1] > heuristic) {
+                    found[at] = found[at - 1];
+                    costs[at] = costs[at - 1];
+                    at--;
+                }
+                found[at] = i * MOVES.length + move.ordinal();
+                costs[at] = heuristic;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Moves one crate of the board in place, or back when called with the
+     * cells swapped.
+     *
+     * @param i     Index of the crate in the crate array
+     * @param from  Cell the crate is on
+     * @param to    Cell the crate goes to
+     */
+    private void apply(int i, int from, int to) {
+        crates[i] = to;
+        crateAt[from] = false;
+        crateAt[to] = true;
+        crateKey ^= zobrist.crate(from) ^ zobrist.crate(to);
+    }
+
+    /**
+     * Marks every cell the player can walk to on the board.
+     *
+     * @param start Cell of the player
+     * @return      Smallest reachable cell, used to key the board
+     */
+    private int fill(int start) {
+        int head = 0;
+        int tail = 0;
+        int smallest = start;
+        int cell, next;
+
+        stamp++;
+        marks[start] = stamp;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            cell = queue[head++];
+            smallest = Math.min(smallest, cell);
+
+            for (Move move : MOVES) {
+                next = reach.neighbour(cell, move);
+
+                if (next >= 0 && !crateAt[next] && marks[next] != stamp) {
+                    marks[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return smallest;
+    }
+
+    /**
+     * Turns the pushes on the current path into states and rebuilds the
+     * full move string from them.
+     *
+     * @return  A string representing the sequence of moves
+     */
+    private String rebuildPath() {
+        State state = initialState;
+        Node node = new Node(state, 0);
+
+        for (int depth = 0; depth < solutionDepth; depth++) {
+            Move move = MOVES[pathMoves[depth]];
+            int target = reach.neighbour(pathFrom[depth], move);
+
+            state = state.pushTo(pathFrom[depth], pathFrom[depth], target);
+            node = new Node(state, node, move, 0);
+        }
+
+        return new PushExpander(initialState, deadSquares, false).rebuildPath(node, initialState);
+    }
+}
@@ -0,0 +1,134 @@
+package solver;
+
+/**
+ * Closed set that only keeps the 64-bit Zobrist key of each state, in a
+ * long[] with open addressing and linear probing. An entry costs 8 to 16
+ * bytes instead of the few hundred a HashSet of states needs. Two different
+ * states sharing a key would be taken as the same one, which at 64 bits is
+ * far less likely than running out of memory.
+ *
+ * The table starts small and doubles while it is more than half full, up to
+ * the capacity it was created with. Once the largest table is three quarters
+ * full, {@link #isFull()} returns true and {@link #add} throws.
+ */
+public class KeyTable implements VisitedSet {
+    private static final int INITIAL_SLOTS = 1 << 16;   // Slots allocated up front
+    private static final long EMPTY = 0L;               // Marks a free slot
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L; // Stands in for a key that is 0
+
+    private final int maxSlots;     // Largest number of slots the table may grow to
+    private long[] slots;           // Keys, EMPTY where free
+    private int size;               // Number of keys stored
+
+    /**
+     * Creates a table that can hold about the given number of states.
+     *
+     * @param capacity  Number of states the table must be able to hold
+     */
+    public KeyTable(int capacity) {
+        long needed = (long) capacity * 4 / 3 + 1;     // Keeps the load at or below 3/4
+
+        if (capacity <= 0 || capacity > 1 << 29)
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^29: " + capacity);
+
+        this.maxSlots = (int) Long.highestOneBit(needed - 1) << 1;
+        this.slots = new long[Math.min(INITIAL_SLOTS, maxSlots)];
+    }
+
+    @Override
+    public boolean contains(State state) {
+        long key = keyOf(state);
+        int mask = slots.length - 1;
+
+        for (int i = index(key, mask); slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (slots[i] == key)
+                return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean add(State state) {
+        long key = keyOf(state);
+
+        if (isFull())
+            throw new IllegalStateException("Visited table is full at " + size + " states");
+
+        if (size >= slots.length / 2 && slots.length < maxSlots)
+            grow();
+
+        return insert(slots, key);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isFull() {
+        return slots.length == maxSlots && size >= (long) maxSlots * 3 / 4;   // Multiplied first, so 2 slots hold 1
+    }
+
+    /**
+     * Doubles the number of slots and inserts the stored keys again.
+     */
+    private void grow() {
+        long[] old = slots;
+
+        slots = new long[old.length * 2];
+        size = 0;
+
+        for (long key : old) {
+            if (key != EMPTY)
+                insert(slots, key);
+        }
+    }
+
+    /**
+     * Puts a key in the first free slot of its probe sequence.
+     *
+     * @param table Slots to insert into
+     * @param key   Key to insert
+     * @return      True if the key was not present yet
+     */
+    private boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        int i = index(key, mask);
+
+        while (table[i] != EMPTY) {
+            if (table[i] == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+
+        table[i] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns the key stored for a state, never EMPTY.
+     *
+     * @param state State to look up
+     * @return      Zobrist key of the state
+     */
+    private static long keyOf(State state) {
+        long key = state.getKey();
+
+        return key == EMPTY ? ZERO_KEY : key;
+    }
+
+    /**
+     * Returns the home slot of a key. Zobrist keys are already uniformly
+     * random, so folding the two halves together is enough.
+     *
+     * @param key   Key
+     * @param mask  Number of slots minus one
+     * @return      Slot index
+     */
+    private static int index(long key, int mask) {
+        return (int) (key >>> 32 ^ key) & mask;
+    }
+}
@@ -0,0 +1,169 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Everything about a level that does not change while it is solved: the
+ * map, the goals, the push-distance tables, the dead squares, the Zobrist
+ * keys and the macro pushes. It is built once per level and shared by every
+ * state of that level, so solves of different levels never see each other's
+ * tables and can run at the same time. Arrays handed out are shared and must
+ * not be modified.
+ */
+public final class Level {
+    private final char[][] map;         // 2D array representing the map layout
+    private final int width;            // Width of the map, used to pack cell indices
+    private final int height;           // Height of the map
+    private final int[] goals;          // Sorted cell indices of the goals
+    private final int[][] distances;    // Push-distance tables per goal index, indexed by cell
+    private final boolean[] deadSquares;// Dead square flags indexed by cell
+    private final Zobrist zobrist;      // Zobrist keys of the level
+    private final Macros macros;        // Tunnels and goal rooms of the level
+
+    /**
+     * Builds a level and its tables from a map.
+     *
+     * @param mapData 2D char array representing the map, with '#' walls and '.' goals
+     * @param width   Width of the map
+     * @param height  Height of the map
+     */
+    public Level(char[][] mapData, int width, int height) {
+        int[] found = new int[width * height];
+        int goalCount = 0;
+
+        // Cells are visited in index order, so the goals come out sorted
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (mapData[row][column] == '.')
+                    found[goalCount++] = row * width + column;
+            }
+        }
+
+        this.map = mapData;
+        this.width = width;
+        this.height = height;
+        this.goals = Arrays.copyOf(found, goalCount);
+        this.distances = getDistances(goals, mapData, width, height);
+        this.deadSquares = SokoBot.findDeadlockSpace(distances, width, height);
+        this.zobrist = new Zobrist(width * height);
+        this.macros = new Macros(mapData, width, height, deadSquares);
+    }
+
+    /**
+     * Checks if the specified cell is a goal.
+     *
+     * @param cell    Cell index of the position
+     * @return        True if the cell is a goal, false otherwise
+     */
+    public boolean isGoal(int cell) {
+        return map[cell / width][cell % width] == '.';
+    }
+
+    /**
+     * Checks if the specified position is a wall.
+     *
+     * @param row     Row of the position
+     * @param column  Column of the position
+     * @return        True if the position is a wall, false otherwise
+     */
+    public boolean isWall(int row, int column) {
+        return map[row][column] == '#';
+    }
+
+    /**
+     * Returns the map layout.
+     *
+     * @return 2D char array map
+     */
+    public char[][] getMap() {
+        return map;
+    }
+
+    /**
+     * Returns the width of the map used to pack cell indices.
+     *
+     * @return Width of the map
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the map.
+     *
+     * @return Height of the map
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the sorted cell indices of the goals.
+     *
+     * @return Sorted goal cell indices
+     */
+    public int[] getGoals() {
+        return goals;
+    }
+
+    /**
+     * Returns the push-distance tables: for each goal index, the fewest
+     * pushes that bring a lone crate from each cell to that goal, or
+     * Integer.MAX_VALUE if it cannot get there.
+     *
+     * @return Push-distance tables indexed by goal index, then by cell
+     */
+    public int[][] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Returns the dead squares: cells from which a lone crate cannot reach
+     * any goal.
+     *
+     * @return Dead square flags indexed by cell
+     */
+    public boolean[] getDeadSquares() {
+        return deadSquares;
+    }
+
+    /**
+     * Returns the Zobrist keys of the level.
+     *
+     * @return Zobrist keys
+     */
+    public Zobrist getZobrist() {
+        return zobrist;
+    }
+
+    /**
+     * Returns the tunnels and goal rooms of the level.
+     *
+     * @return Macro pushes
+     */
+    public Macros getMacros() {
+        return macros;
+    }
+
+    /**
+     * Generates push-distance tables for the available goals. Each goal's
+     * table is built by a reverse pull search, and the goals are spread over
+     * the common fork-join pool so level startup stays fast.
+     *
+     * @param goals   Sorted goal cell indices
+     * @param mapData 2D char array map
+     * @param width   Width of the map
+     * @param height  Height of the map
+     * @return        Push-distance tables indexed by goal position in the goals array
+     */
+    private static int[][] getDistances(int[] goals, char[][] mapData, int width, int height) {
+        int[][] distances = new int[goals.length][];
+
+        if (goals.length > 0)
+            ForkJoinPool.commonPool().invoke(
+                new PullDistances(goals, 0, goals.length, mapData, width, height, distances));
+
+        return distances;
+    }
+}
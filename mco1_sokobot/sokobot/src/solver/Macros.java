@@ -0,0 +1,615 @@
+package solver;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Macro pushes of a level, found once when it loads, that let the push-level
+ * search move a crate several cells in one step where the cells in between
+ * offer no real choice.
+ *
+ * A tunnel is a run of cells with walls on both sides across a direction. A
+ * crate pushed along a tunnel, with the player in the tunnel behind it, is
+ * carried on until it leaves the tunnel, reaches a goal, or is blocked.
+ *
+ * A goal room is a small area holding goals that the rest of the level only
+ * reaches through one cell, the door. An order to fill its goals is worked
+ * out up front, each goal reachable from the door with the goals before it
+ * filled and the player able to walk back out. A crate pushed through the
+ * door while the room holds exactly the goals filled so far is put straight
+ * on the next goal in that order.
+ *
+ * Instances are immutable and shared by every search of the level.
+ */
+public final class Macros {
+    private static final Move[] MOVES = Move.values();
+    private static final int MAX_ROOM_CELLS = 64;       // Larger areas are left to the search
+    private static final int MAX_ROOM_GOALS = 16;       // Goals a room may hold, so filled sets fit in an int
+    private static final int MAX_PACKING_TRIES = 4096;  // Paths tried per room before giving up on an order
+
+    private final int[] neighbours;         // Neighbour cell per cell and move ordinal, -1 if wall or outside
+    private final boolean[] goals;          // Goal flags indexed by cell
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final boolean[] tunnels;        // Per cell and move ordinal, whether both cells across are walls
+    private final Room[] doorRooms;         // Per cell and move ordinal, room a crate pushed off the cell enters
+    private final int goalCount;            // Goals of the whole level
+
+    /**
+     * Finds the tunnels and goal rooms of a level.
+     *
+     * @param mapData       2D char array representing the map
+     * @param width         Width of the map
+     * @param height        Height of the map
+     * @param deadSquares   Dead square flags indexed by cell
+     */
+    public Macros(char[][] mapData, int width, int height, boolean[] deadSquares) {
+        int cells = width * height;
+        int row, column, count = 0;
+
+        this.neighbours = new int[cells * MOVES.length];
+        this.goals = new boolean[cells];
+        this.deadSquares = deadSquares;
+        this.tunnels = new boolean[cells * MOVES.length];
+        this.doorRooms = new Room[cells * MOVES.length];
+
+        for (int cell = 0; cell < cells; cell++) {
+            goals[cell] = mapData[cell / width][cell % width] == '.';
+            if (goals[cell])
+                count++;
+
+            for (Move move : MOVES) {
+                row = cell / width + move.getRowDelta();
+                column = cell % width + move.getColumnDelta();
+
+                if (row >= 0 && row < height && column >= 0 && column < width
+                    && !State.isWall(row, column, mapData))
+                    neighbours[cell * MOVES.length + move.ordinal()] = row * width + column;
+                else
+                    neighbours[cell * MOVES.length + move.ordinal()] = -1;
+            }
+        }
+
+        this.goalCount = count;
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (State.isWall(cell / width, cell % width, mapData))
+                continue;
+
+            for (Move move : MOVES) {
+                Move across = move == Move.UP || move == Move.DOWN ? Move.LEFT : Move.UP;
+
+                tunnels[cell * MOVES.length + move.ordinal()] = neighbour(cell, across) < 0
+                    && neighbour(cell, across.opposite()) < 0;
+            }
+        }
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (State.isWall(cell / width, cell % width, mapData))
+                continue;
+
+            for (Move move : MOVES) {
+                int door = neighbour(cell, move);
+
+                if (door >= 0)
+                    doorRooms[cell * MOVES.length + move.ordinal()] = findRoom(cell, door);
+            }
+        }
+    }
+
+    /**
+     * Finds where a push ends once the macros are applied: on the next goal
+     * of a goal room the push enters, at the end of a tunnel, or one cell on.
+     *
+     * @param state Current state of the board
+     * @param from  Cell of the crate being pushed
+     * @param move  Direction of the push, which must be legal
+     * @return      Cell the crate ends on
+     */
+    public int push(State state, int from, Move move) {
+        int to = neighbour(from, move);
+        Room room = doorRooms[from * MOVES.length + move.ordinal()];
+
+        if (room != null) {
+            int step = room.step(state);
+            return step >= 0 ? room.order[step] : to;
+        }
+
+        int player = from;
+        int crate = to;
+        int next;
+
+        while (isTunnel(player, move) && isTunnel(crate, move) && !goals[crate]
+            && doorRooms[crate * MOVES.length + move.ordinal()] == null) {
+            next = neighbour(crate, move);
+            if (next < 0 || state.hasCrateAt(next) || deadSquares[next])
+                break;
+
+            player = crate;
+            crate = next;
+        }
+
+        return crate;
+    }
+
+    /**
+     * Returns the moves of a push found by {@link #push}, starting with the
+     * push itself, so the full move string can be rebuilt.
+     *
+     * @param from      Cell the crate was pushed from
+     * @param move      Direction of the first push
+     * @param landed    Cell the crate ended on
+     * @return          Move string of the pushes and the walks between them
+     */
+    public String path(int from, Move move, int landed) {
+        Room room = doorRooms[from * MOVES.length + move.ordinal()];
+        StringBuilder path = new StringBuilder().append(move.toCommand());
+
+        if (room != null && landed != neighbour(from, move)) {
+            for (int step = 0; step < room.order.length; step++) {
+                if (room.order[step] == landed)
+                    return path.append(room.paths[step]).toString();
+            }
+
+            throw new IllegalStateException("Cell " + landed + " is not a goal of the room entered from " + from);
+        }
+
+        for (int crate = neighbour(from, move); crate != landed; crate = neighbour(crate, move)) {
+            if (crate < 0)
+                throw new IllegalStateException("Cell " + landed + " is not in line with " + from);
+
+            path.append(move.toCommand());
+        }
+
+        return path.toString();
+    }
+
+    /**
+     * Counts the pushes of a push found by {@link #push}, the push itself
+     * included, which the search takes as a single step.
+     *
+     * @param from      Cell the crate was pushed from
+     * @param move      Direction of the first push
+     * @param landed    Cell the crate ended on
+     * @return          Number of times the crate is pushed
+     */
+    public int pushes(int from, Move move, int landed) {
+        Room room = doorRooms[from * MOVES.length + move.ordinal()];
+        int count = 1;
+
+        if (room != null && landed != neighbour(from, move)) {
+            for (int step = 0; step < room.order.length; step++) {
+                if (room.order[step] == landed)
+                    return count + room.pushes[step];
+            }
+
+            throw new IllegalStateException("Cell " + landed + " is not a goal of the room entered from " + from);
+        }
+
+        for (int crate = neighbour(from, move); crate != landed; crate = neighbour(crate, move)) {
+            if (crate < 0)
+                throw new IllegalStateException("Cell " + landed + " is not in line with " + from);
+
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if a cell has walls on both sides across a direction.
+     *
+     * @param cell  Cell index
+     * @param move  Direction along the tunnel
+     * @return      True if the cell is part of a tunnel in that direction
+     */
+    private boolean isTunnel(int cell, Move move) {
+        return tunnels[cell * MOVES.length + move.ordinal()];
+    }
+
+    /**
+     * Returns the cell next to the given one in the direction of a move.
+     *
+     * @param cell  Cell index
+     * @param move  Direction to look in
+     * @return      Neighbour cell index, or -1 if it is a wall or outside the map
+     */
+    private int neighbour(int cell, Move move) {
+        return neighbours[cell * MOVES.length + move.ordinal()];
+    }
+
+    /**
+     * Checks if the cells behind a door form a goal room and works out the
+     * order to fill it in.
+     *
+     * @param outside   Cell in front of the door, where the crate comes from
+     * @param door      First cell of the room
+     * @return          The room, or null if it is not one or cannot be packed
+     */
+    private Room findRoom(int outside, int door) {
+        BitSet cells = new BitSet();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int roomGoals = 0;
+
+        // Everything the door reaches without passing the outside cell
+        cells.set(door);
+        queue.add(door);
+
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+
+            if (goals[cell])
+                roomGoals++;
+            if (cells.cardinality() > MAX_ROOM_CELLS)
+                return null;
+
+            for (Move move : MOVES) {
+                int next = neighbour(cell, move);
+
+                if (next >= 0 && next != outside && !cells.get(next)) {
+                    cells.set(next);
+                    queue.add(next);
+                }
+            }
+        }
+
+        if (roomGoals == 0 || roomGoals > MAX_ROOM_GOALS)
+            return null;
+
+        // The door must be the only way in, and there must be a rest of the level
+        boolean rest = false;
+
+        for (Move move : MOVES) {
+            int next = neighbour(outside, move);
+
+            if (next >= 0 && next != door) {
+                if (cells.get(next))
+                    return null;
+                rest = true;
+            }
+        }
+
+        if (!rest)
+            return null;
+
+        int[] roomGoalCells = new int[roomGoals];
+        int[] depth = walkDistances(cells, door);
+        int count = 0;
+
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+            if (goals[cell])
+                roomGoalCells[count++] = cell;
+        }
+
+        // Try the deepest goals first, which rarely block the ones nearer the door
+        Integer[] sorted = Arrays.stream(roomGoalCells).boxed()
+            .sorted((a, b) -> Integer.compare(depth[b], depth[a])).toArray(Integer[]::new);
+
+        Room room = new Room(cells, roomGoals);
+        Packing packing = new Packing(cells, outside, door, Arrays.stream(sorted).mapToInt(i -> i).toArray(),
+            roomGoals == goalCount);
+
+        return packing.fill(room, 0, 0) ? room : null;
+    }
+
+    /**
+     * Counts the steps from the door to every cell of a room.
+     *
+     * @param cells Cells of the room
+     * @param door  First cell of the room
+     * @return      Steps indexed by cell, for the cells of the room
+     */
+    private int[] walkDistances(BitSet cells, int door) {
+        int[] depth = new int[goals.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        Arrays.fill(depth, -1);
+        depth[door] = 0;
+        queue.add(door);
+
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+
+            for (Move move : MOVES) {
+                int next = neighbour(cell, move);
+
+                if (next >= 0 && cells.get(next) && depth[next] < 0) {
+                    depth[next] = depth[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * Search for a packing order of one room: a depth-first search over the
+     * sets of filled goals, with each step checked by a search over the cells
+     * of the crate and the player inside the room.
+     */
+    private final class Packing {
+        private final BitSet cells;         // Cells of the room
+        private final int outside;          // Cell in front of the door
+        private final int door;             // First cell of the room
+        private final int[] candidates;     // Goals of the room, deepest first
+        private final boolean last;         // Whether the room holds every goal, so the player may stay in
+        private final int[] local;          // Index of each cell among the room cells and the outside cell
+        private final int[] cellOf;         // Cell of each index
+        private final Set<Integer> failed;  // Filled sets known to lead nowhere
+        private int tries;                  // Paths searched so far
+
+        /**
+         * Prepares the search for a room.
+         *
+         * @param cells         Cells of the room
+         * @param outside       Cell in front of the door
+         * @param door          First cell of the room
+         * @param candidates    Goals of the room, in the order to try them
+         * @param last          Whether the room holds every goal of the level
+         */
+        Packing(BitSet cells, int outside, int door, int[] candidates, boolean last) {
+            this.cells = cells;
+            this.outside = outside;
+            this.door = door;
+            this.candidates = candidates;
+            this.last = last;
+            this.local = new int[goals.length];
+            this.cellOf = new int[cells.cardinality() + 1];
+            this.failed = new HashSet<>();
+
+            Arrays.fill(local, -1);
+            int count = 0;
+
+            for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+                local[cell] = count;
+                cellOf[count++] = cell;
+            }
+
+            local[outside] = count;
+            cellOf[count] = outside;
+        }
+
+        /**
+         * Fills the rest of the room's order from a set of filled goals.
+         *
+         * @param room      Room whose order and paths are written
+         * @param filled    Bits of the candidates already filled
+         * @param step      Number of goals already filled
+         * @return          True if every goal could be filled
+         */
+        boolean fill(Room room, int filled, int step) {
+            if (step == candidates.length)
+                return true;
+            if (failed.contains(filled) || tries >= MAX_PACKING_TRIES)
+                return false;
+
+            for (int i = 0; i < candidates.length; i++) {
+                if ((filled & (1 << i)) != 0)
+                    continue;
+
+                tries++;
+                String path = path(filled, candidates[i], last && step == candidates.length - 1);
+
+                if (path != null) {
+                    room.order[step] = candidates[i];
+                    room.paths[step] = path;
+                    room.pushes[step] = pushes(path);
+
+                    if (fill(room, filled | (1 << i), step + 1))
+                        return true;
+                }
+            }
+
+            failed.add(filled);
+            return false;
+        }
+
+        /**
+         * Finds the moves that take a crate just pushed onto the door to a
+         * goal, with the player starting on the outside cell and ending where
+         * it can walk back out.
+         *
+         * @param filled    Bits of the candidates already filled
+         * @param goal      Goal to bring the crate to
+         * @param stay      Whether the player may end up shut in
+         * @return          Move string, or null if there is none
+         */
+        private String path(int filled, int goal, boolean stay) {
+            int n = cellOf.length;
+            int[] parent = new int[n * n];          // Indexed by crate index * n + player index
+            byte[] via = new byte[n * n];
+            int[] queue = new int[n * n];
+            int head = 0, tail = 0;
+            int start = local[door] * n + local[outside];
+
+            Arrays.fill(parent, -1);
+            parent[start] = start;
+            queue[tail++] = start;
+
+            while (head < tail) {
+                int current = queue[head++];
+                int crate = cellOf[current / n];
+                int player = cellOf[current % n];
+
+                if (crate == goal && (stay || canLeave(filled, goal, player)))
+                    return commands(parent, via, start, current);
+
+                for (Move move : MOVES) {
+                    int next = neighbour(player, move);
+                    int nextCrate = crate;
+
+                    if (next < 0 || local[next] < 0 || isFilled(filled, next))
+                        continue;
+
+                    if (next == crate) {
+                        nextCrate = neighbour(crate, move);
+                        if (nextCrate < 0 || !cells.get(nextCrate) || isFilled(filled, nextCrate))
+                            continue;
+                    }
+
+                    int state = local[nextCrate] * n + local[next];
+                    if (parent[state] < 0) {
+                        parent[state] = current;
+                        via[state] = (byte) move.ordinal();
+                        queue[tail++] = state;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Counts the pushes of a path found by {@link #path} by replaying it
+         * from the crate on the door and the player outside.
+         *
+         * @param path  Move string after the push onto the door
+         * @return      Number of times the crate is pushed
+         */
+        private int pushes(String path) {
+            int player = outside;
+            int crate = door;
+            int count = 0;
+
+            for (int i = 0; i < path.length(); i++) {
+                for (Move move : MOVES) {
+                    if (move.toCommand() != path.charAt(i))
+                        continue;
+
+                    player = neighbour(player, move);
+                    if (player == crate) {
+                        crate = neighbour(crate, move);
+                        count++;
+                    }
+                    break;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Checks if the player can walk from inside the room to the outside
+         * cell once a goal is filled.
+         *
+         * @param filled    Bits of the candidates filled before
+         * @param goal      Goal just filled
+         * @param player    Cell the player is on
+         * @return          True if the player can get out
+         */
+        private boolean canLeave(int filled, int goal, int player) {
+            boolean[] seen = new boolean[cellOf.length];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+            seen[local[player]] = true;
+            queue.add(player);
+
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+
+                if (cell == outside)
+                    return true;
+
+                for (Move move : MOVES) {
+                    int next = neighbour(cell, move);
+
+                    if (next >= 0 && local[next] >= 0 && next != goal && !isFilled(filled, next)
+                        && !seen[local[next]]) {
+                        seen[local[next]] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Checks if a cell holds one of the filled goals.
+         *
+         * @param filled    Bits of the candidates filled
+         * @param cell      Cell index
+         * @return          True if a crate sits on the cell
+         */
+        private boolean isFilled(int filled, int cell) {
+            for (int i = 0; i < candidates.length; i++) {
+                if ((filled & (1 << i)) != 0 && candidates[i] == cell)
+                    return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Follows the search links back to the start and writes the moves.
+         *
+         * @param parent    Link to the state each state was reached from
+         * @param via       Move each state was reached by
+         * @param start     State the search started from
+         * @param end       State that was reached
+         * @return          Move string from start to end
+         */
+        private String commands(int[] parent, byte[] via, int start, int end) {
+            StringBuilder path = new StringBuilder();
+
+            for (int state = end; state != start; state = parent[state])
+                path.append(MOVES[via[state]].toCommand());
+
+            return path.reverse().toString();
+        }
+    }
+
+    /**
+     * A goal room with its packing order: the goals in the order they are
+     * filled, and for each the moves that bring a crate from the door to it.
+     */
+    private static final class Room {
+        private final BitSet cells;     // Cells of the room
+        private final int[] order;      // Goals in the order they are filled
+        private final String[] paths;   // Moves after the push onto the door, per goal
+        private final int[] pushes;     // Pushes in each of those paths
+
+        /**
+         * Creates a room whose order is still to be filled in.
+         *
+         * @param cells     Cells of the room
+         * @param goalCount Goals in the room
+         */
+        Room(BitSet cells, int goalCount) {
+            this.cells = cells;
+            this.order = new int[goalCount];
+            this.paths = new String[goalCount];
+            this.pushes = new int[goalCount];
+        }
+
+        /**
+         * Finds how far the room is packed: the number of crates in it, if
+         * they sit on the first goals of the order and nowhere else.
+         *
+         * @param state Current state of the board
+         * @return      Index of the next goal to fill, or -1 if the room is
+         *              full or holds crates off the order
+         */
+        int step(State state) {
+            int count = 0;
+
+            for (int crate : state.getCrates()) {
+                if (cells.get(crate))
+                    count++;
+            }
+
+            if (count >= order.length)
+                return -1;
+
+            for (int i = 0; i < count; i++) {
+                if (!state.hasCrateAt(order[i]))
+                    return -1;
+            }
+
+            return count;
+        }
+    }
+}
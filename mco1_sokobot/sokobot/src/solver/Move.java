@@ -1,10 +1,6 @@
 package solver;
 
-import java.awt.Point;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Enum representing the possible moves in Sokoban which are up, down, left, and right.
@@ -44,6 +40,21 @@ public enum Move {
 		}
   	}
 
+	/**
+     * Returns the move going the opposite way.
+     *
+     * @return DOWN for UP, UP for DOWN, RIGHT for LEFT, LEFT for RIGHT
+     */
+	public Move opposite() {
+		switch (this) {
+			case UP -> { return DOWN; }
+			case DOWN -> { return UP; }
+			case LEFT -> { return RIGHT; }
+			case RIGHT -> { return LEFT; }
+			default -> throw new IllegalStateException("Unhandled move: " + this);
+		}
+  	}
+
 	/**
      * This attempts to apply a move to the given state. This would check walls, 
      * crate collisions, and moves crates if possible.
@@ -64,10 +75,7 @@ public enum Move {
 
 		// If no crate at target cell, move player there
 		if (!state.hasCrateAt(targetRow, targetColumn))
-			return Optional.of(state.moveTo(targetRow, targetColumn, state.getCrates()));
-
-		crateRow = targetRow + rowDelta;
-		crateColumn = targetColumn + columnDelta;
+			return Optional.of(state.moveTo(targetRow, targetColumn));
 
 		// If crate cannot be moved, return empty
 		if (!state.isWithinBounds(crateRow, crateColumn)
@@ -76,36 +84,11 @@ public enum Move {
 			return Optional.empty();
 
 		// Move crate
-		Set<Point> updatedCrates = copyCrates(state);
-		updatedCrates.remove(point(targetColumn, targetRow));
-		updatedCrates.add(point(crateColumn, crateRow));
-
-		return Optional.of(state.moveTo(targetRow, targetColumn, updatedCrates));
-	}
-	
-	/**
-	 * Creates a defensive copy of the set of crates.
-	 * 
-	 * @param state Current state of the game
-	 * @return		Copy of the set of crates in the given state
-	 */
-	public static Set<Point> copyCrates(State state) {
-		return state.getCrates().stream()
-			.map(Point::new)
-			.collect(Collectors.toCollection(HashSet::new));
+		int width = state.getWidth();
+		return Optional.of(state.pushTo(targetRow, targetColumn,
+			targetRow * width + targetColumn, crateRow * width + crateColumn));
 	}
 
-	/**
-     * Creates a Point object from column and row coordinates.
-     *
-     * @param column 	Column index
-     * @param row 		Row index
-     * @return 			Point representing the column and row
-     */
-	public static Point point(int column, int row) {
-		return new Point(column, row);
-	}
-	
 	/**
      * Returns the row delta of this move.
      *
@@ -1,27 +1,72 @@
 package solver;
 
-import java.awt.Point;
-import java.util.HashSet;
-import java.util.Set;
-
 /**
- * Represents a node in the Sokobot search tree, each having a state, path, and cost.
+ * Represents a node in the Sokobot search tree, each having a state, a link to
+ * its parent, the move that produced it, and a cost. The move string is only
+ * built when a solution is found, by walking the parent links back to the root.
  */
 public class Node {
     public State state;     // Current state of the board
-    public String path;     // Path taken from initial state to this state
+    public Node parent;     // Node this one was expanded from, null for the root
+    public byte move;       // Ordinal of the move taken from the parent, -1 for the root
+    public int depth;       // Number of moves taken from the initial state
+    public int heuristic;   // Estimated remaining cost from this state
     public int cost;        // Total cost of this node
     
     /**
-     * Constructs a new Node with the given state and path.
+     * Constructs the root node of a search.
+     * 
+     * @param state       Initial state of the board 
+     * @param heuristic   Estimated remaining cost from the state
+     */
+    public Node(State state, int heuristic) {
+        this(state, heuristic, 1);
+    }
+
+    /**
+     * Constructs the root node of a weighted search.
+     * 
+     * @param state       Initial state of the board 
+     * @param heuristic   Estimated remaining cost from the state
+     * @param weight      Factor the heuristic is multiplied by in the cost
+     */
+    public Node(State state, int heuristic, int weight) {
+        this.state = state;
+        this.parent = null;
+        this.move = -1;
+        this.depth = 0;
+        this.heuristic = heuristic;
+        this.cost = computeCost(depth, heuristic, weight);
+    }
+
+    /**
+     * Constructs a child node reached from the given parent by one move.
+     * 
+     * @param state     State of the board after the move
+     * @param parent    Node the move was taken from
+     * @param move      Move that was taken
+     * @param heuristic Estimated remaining cost from the state
+     */
+    public Node(State state, Node parent, Move move, int heuristic) {
+        this(state, parent, move, heuristic, 1);
+    }
+
+    /**
+     * Constructs a child node of a weighted search.
      * 
-     * @param state Current state of the board 
-     * @param path  String representation of the moves taken
+     * @param state     State of the board after the move
+     * @param parent    Node the move was taken from
+     * @param move      Move that was taken
+     * @param heuristic Estimated remaining cost from the state
+     * @param weight    Factor the heuristic is multiplied by in the cost
      */
-    public Node(State state, String path) {
+    public Node(State state, Node parent, Move move, int heuristic, int weight) {
         this.state = state;
-        this.path = path;
-        this.cost = computeCost(state, path);
+        this.parent = parent;
+        this.move = (byte) move.ordinal();
+        this.depth = parent.depth + 1;
+        this.heuristic = heuristic;
+        this.cost = computeCost(depth, heuristic, weight);
     }
 
     /**
@@ -34,12 +79,19 @@ public class Node {
     }
 
     /**
-     * Returns the path string that represents the moves taken to reach this node.
+     * Rebuilds the path string that represents the moves taken to reach this
+     * node by following the parent links.
      * 
      * @return Path string
      */
     public String getPath() {
-        return this.path;
+        char[] path = new char[depth];
+        Move[] moves = Move.values();
+
+        for (Node node = this; node.parent != null; node = node.parent)
+            path[node.depth - 1] = moves[node.move].toCommand();
+
+        return new String(path);
     }
 
     /**
@@ -52,54 +104,30 @@ public class Node {
     }
 
     /**
-     * Computes the total cost of a node.
+     * Computes the total cost of a node. The heuristic is the minimum-cost
+     * matching of crates to goals found by {@link Assignment}, which the
+     * search updates incrementally when a single crate moves.
      * 
-     * @param state Current state
-     * @param path  Path taken to reach this state
-     * @return      Total cost
+     * @param depth     Number of moves taken to reach the state
+     * @param heuristic Estimated remaining cost from the state
+     * @return          Total cost
      */
-    public int computeCost(State state, String path) {
-        Set<Point> goals = state.getGoals();
-        Set<Point> crates = state.getCrates();
-        Set<Point> availableGoals = new HashSet<>(goals);   // Each crate assigned to only one goal
-        int[][] hMap;
-        int gcost = path.length();
-        int hcost = 0;
-        int dist, minDistance;
-
-        // Skip crates already on goals
-        for (Point crate : crates) {
-            if (goals.contains(crate)) {
-                availableGoals.remove(crate);
-                continue;
-            }
-
-            minDistance = Integer.MAX_VALUE;    // Start at a large value
-            Point closestGoal = null;
-
-            // Find closest goal for this crate
-            for (Point goal : availableGoals) {
-                hMap = State.heuristicsMap.get(goal);
-                
-                if (hMap == null) 
-                    continue; 
-                
-                dist = hMap[crate.y][crate.x];
-
-                if (dist < minDistance) {       // If new distance is smaller than previous distance,
-                    minDistance = dist;         // assigns goal to be removed and new distance.
-                    closestGoal = goal;
-                }
-            }
-
-            if (minDistance == Integer.MAX_VALUE)   // Makes it least prioritize for queue
-                hcost += 1_000_000; 
-            else {
-                hcost += minDistance;
-                availableGoals.remove(closestGoal);
-            }
-        }
+    public static int computeCost(int depth, int heuristic) {
+        return depth + heuristic;       // Return total cost
+    }
 
-        return gcost + hcost;       // Return total cost
+    /**
+     * Computes the total cost of a node in a weighted search. Weights above 1
+     * trust the heuristic more than the moves already made, which finds longer
+     * solutions in fewer expansions; a very large weight amounts to greedy
+     * best-first search with ties broken by depth.
+     * 
+     * @param depth     Number of moves taken to reach the state
+     * @param heuristic Estimated remaining cost from the state
+     * @param weight    Factor the heuristic is multiplied by, at least 1
+     * @return          Total cost
+     */
+    public static int computeCost(int depth, int heuristic, int weight) {
+        return depth + weight * heuristic;
     }
-}
\ No newline at end of file
+}
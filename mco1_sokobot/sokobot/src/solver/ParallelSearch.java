@@ -0,0 +1,267 @@
+package solver;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-distributed A* (HDA*) over the push-level search space. Every state is
+ * owned by one worker, picked from the high bits of its Zobrist key. A worker
+ * keeps its own open list and closed set for the states it owns, and sends the
+ * children it generates for other workers to their inbox, a lock-free queue
+ * that any worker may add to and only the owner drains.
+ *
+ * The search ends as soon as any worker pops a goal, or when no work is left
+ * anywhere. The latter is tracked with one counter of pending nodes: a node is
+ * counted when it is sent or queued and uncounted once it was expanded or
+ * dropped as a duplicate, and children are counted before their parent is
+ * uncounted, so the counter only reaches zero when every open list and inbox
+ * is empty.
+ */
+public class ParallelSearch {
+    private static final long IDLE_NANOS = 1_000_000;   // Longest an idle worker sleeps before checking again
+
+    private final State initialState;                   // State the level starts in
+    private final boolean[] deadSquares;                // Dead square flags indexed by cell
+    private final SearchMonitor monitor;                // Cancellation token and progress sink
+    private final SolverOptions options;                // Open list, closed set and thread count
+    private final Worker[] workers;                     // One per partition of the state space
+    private final AtomicLong pending;                   // Nodes sent, queued or being expanded
+    private final AtomicReference<Node> solution;       // First goal node found
+    private volatile boolean stopped;                   // Set once every worker should return
+    private volatile boolean overflowed;                // Set if a closed set ran out of room
+
+    /**
+     * Creates a parallel search for a level.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param options       Open list, closed set, weight and thread count to use
+     * @param monitor       Cancellation token and progress sink shared by the workers
+     */
+    public ParallelSearch(State initialState, boolean[] deadSquares, SolverOptions options,
+            SearchMonitor monitor) {
+        this.initialState = initialState;
+        this.deadSquares = deadSquares;
+        this.monitor = monitor;
+        this.options = options;
+        this.workers = new Worker[options.getThreads()];
+        this.pending = new AtomicLong();
+        this.solution = new AtomicReference<>();
+    }
+
+    /**
+     * Runs the workers until one finds a goal or the search space is exhausted.
+     *
+     * @return  A string representing the sequence of moves, empty if none
+     */
+    public String solve() {
+        PushExpander expander = new PushExpander(initialState, deadSquares, options.isLearnPatterns());
+        Thread[] threads = new Thread[workers.length];
+        State root = expander.normalize(initialState);
+        int heuristic = expander.estimate(root);
+
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        for (int i = 0; i < workers.length; i++)
+            workers[i] = new Worker(i);
+
+        pending.incrementAndGet();
+        workers[owner(root)].inbox.add(new Node(root, heuristic, options.getWeight()));
+
+        for (int i = 0; i < workers.length; i++) {
+            threads[i] = new Thread(workers[i], "hda-worker-" + i);
+            workers[i].thread = threads[i];
+            threads[i].start();
+        }
+
+        try {
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            stopped = true;
+            Thread.currentThread().interrupt();
+            return "";
+        }
+
+        if (solution.get() == null || overflowed || monitor.isCancelled())
+            return "";
+
+        return expander.rebuildPath(solution.get(), initialState);
+    }
+
+    /**
+     * Returns the number of nodes the workers expanded, for measuring throughput.
+     *
+     * @return  Total number of expansions
+     */
+    public long getExpanded() {
+        long expanded = 0;
+
+        for (Worker worker : workers) {
+            if (worker != null)
+                expanded += worker.expanded;
+        }
+
+        return expanded;
+    }
+
+    /**
+     * Picks the worker owning a state. The closed sets index by the low bits
+     * of the key, so the owner is taken from the high bits to keep them apart.
+     *
+     * @param state State to place
+     * @return      Worker index
+     */
+    private int owner(State state) {
+        return (int) ((state.getKey() >>> 32) * workers.length >>> 32);
+    }
+
+    /**
+     * Stops every worker, waking those that are idle.
+     */
+    private void stop() {
+        stopped = true;
+
+        for (Worker worker : workers)
+            LockSupport.unpark(worker.thread);
+    }
+
+    /**
+     * One partition of the search: an inbox, an open list, a closed set and
+     * its own push generator.
+     */
+    private class Worker implements Runnable {
+        private final int id;                               // Index of this worker
+        private final ConcurrentLinkedQueue<Node> inbox;    // Nodes sent by any worker
+        private final Frontier queue;                       // Open list of owned states
+        private final VisitedSet visited;                   // Closed set of owned states
+        private volatile Thread thread;                     // Thread running this worker
+        private volatile boolean idle;                      // Set while parked waiting for work
+        private volatile long expanded;                     // Nodes expanded, written by this worker only
+        private final ProgressCounter progress;             // Expansions not yet reported to the monitor
+
+        /**
+         * Creates a worker with an even share of the closed set capacity.
+         *
+         * @param id    Index of this worker
+         */
+        Worker(int id) {
+            this.id = id;
+            this.inbox = new ConcurrentLinkedQueue<>();
+            this.queue = options.getFrontier().create();
+            this.visited = options.getVisited().create(Math.max(1, options.getVisitedCapacity() / workers.length));
+            this.progress = new ProgressCounter(monitor);
+        }
+
+        @Override
+        public void run() {
+            PushExpander expander = new PushExpander(initialState, deadSquares, options.isLearnPatterns());
+            int childCount, target;
+
+            while (!stopped) {
+                if (monitor.isCancelled()) {
+                    stop();                 // Cancelled, e.g. by a faster search
+                    break;
+                }
+
+                drainInbox();
+
+                Node current = queue.poll();     // Get node with the lowest cost
+
+                if (current == null) {
+                    waitForWork();
+                    continue;
+                }
+
+                if (current.state.isGoalState()) {
+                    solution.compareAndSet(null, current);
+                    stop();
+                    break;
+                }
+
+                childCount = expander.expand(current.state, visited);
+
+                for (int i = 0; i < childCount; i++) {
+                    Node child = new Node(expander.child(i), current, expander.move(i), expander.heuristic(i),
+                        options.getWeight());
+
+                    pending.incrementAndGet();
+                    target = owner(child.state);
+
+                    if (target == id)
+                        accept(child);
+                    else
+                        send(workers[target], child);
+                }
+
+                expanded++;
+                progress.expanded(current.heuristic, queue.size());
+                pending.decrementAndGet();      // Children are counted, so this cannot end the search early
+            }
+
+            progress.flush();                   // Whatever is left since the last report
+        }
+
+        /**
+         * Moves every node waiting in the inbox into the open list.
+         */
+        private void drainInbox() {
+            Node node;
+
+            while ((node = inbox.poll()) != null)
+                accept(node);
+        }
+
+        /**
+         * Adds an owned node to the open list unless its state was seen before.
+         *
+         * @param node  Node whose state this worker owns
+         */
+        private void accept(Node node) {
+            if (visited.contains(node.state)) {
+                pending.decrementAndGet();
+                return;
+            }
+
+            if (visited.isFull()) {             // Out of room for new states, give up
+                overflowed = true;
+                stop();
+                return;
+            }
+
+            visited.add(node.state);
+            queue.add(node);
+        }
+
+        /**
+         * Sleeps until a node arrives, or ends the search if nothing is pending.
+         */
+        private void waitForWork() {
+            if (pending.get() == 0) {
+                stop();
+                return;
+            }
+
+            idle = true;
+            if (inbox.isEmpty() && !stopped)
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            idle = false;
+        }
+
+        /**
+         * Hands a node to the worker owning its state, waking it if it sleeps.
+         *
+         * @param owner Worker owning the state of the node
+         * @param node  Node to send
+         */
+        private void send(Worker owner, Node node) {
+            owner.inbox.add(node);
+
+            if (owner.idle)
+                LockSupport.unpark(owner.thread);
+        }
+    }
+}
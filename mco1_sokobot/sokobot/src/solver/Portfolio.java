@@ -0,0 +1,123 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Races several differently configured searches on the same level and returns
+ * the first solution any of them finds. No single configuration is fastest on
+ * every level: weighted and greedy searches reach a goal in far fewer
+ * expansions when the heuristic is good, while plain A* recovers better from
+ * misleading estimates. The searches that are still running when one succeeds
+ * are cancelled by interrupting their threads, which they check once per
+ * expansion.
+ */
+public class Portfolio {
+    private final List<SolverOptions> strategies;   // One configuration per search
+    private final SearchMonitor monitor;            // Cancellation token and progress sink shared by the searches
+
+    /**
+     * Creates a portfolio running the given configurations.
+     *
+     * @param strategies    Options of each search, none of them a portfolio itself
+     */
+    public Portfolio(List<SolverOptions> strategies) {
+        this(strategies, new SearchMonitor());
+    }
+
+    /**
+     * Creates a portfolio running the given configurations that all report
+     * to, and can be cancelled through, one monitor.
+     *
+     * @param strategies    Options of each search, none of them a portfolio itself
+     * @param monitor       Cancellation token and progress sink shared by the searches
+     */
+    public Portfolio(List<SolverOptions> strategies, SearchMonitor monitor) {
+        for (SolverOptions strategy : strategies) {
+            if (strategy.getEngine() == SearchEngine.PORTFOLIO)
+                throw new IllegalArgumentException("A portfolio cannot contain a portfolio");
+        }
+
+        this.strategies = strategies;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Builds the default strategies from the given options: push-level A*,
+     * weighted A*, greedy best-first, and A* with learned deadlock
+     * patterns. They share the closed set capacity of the options, so the
+     * portfolio stays within the memory of a single search.
+     *
+     * @param base  Options the strategies start from
+     * @return      Options of each search
+     */
+    public static List<SolverOptions> strategies(SolverOptions base) {
+        List<SolverOptions> strategies = new ArrayList<>();
+        SolverOptions single = base.copy()
+            .setEngine(SearchEngine.ASTAR)
+            .setMode(SearchMode.PUSHES)
+            .setWeight(1)
+            .setLearnPatterns(false);
+
+        strategies.add(single.copy());
+        strategies.add(single.copy().setWeight(2));
+        strategies.add(single.copy().setWeight(SolverOptions.GREEDY));
+        strategies.add(single.copy().setLearnPatterns(true));
+
+        for (SolverOptions strategy : strategies)
+            strategy.setVisitedCapacity(Math.max(1, base.getVisitedCapacity() / strategies.size()));
+
+        return strategies;
+    }
+
+    /**
+     * Starts every strategy on its own thread and waits for the first solution.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @return              A string representing the sequence of moves, empty if no strategy found one
+     */
+    public String solve(State initialState, boolean[] deadSquares) {
+        ExecutorService pool = Executors.newFixedThreadPool(strategies.size(), task -> {
+            Thread thread = new Thread(task, "portfolio-search");
+            thread.setDaemon(true);         // A search ignoring cancellation must not keep the program alive
+            return thread;
+        });
+        CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+        ExecutionException failure = null;
+
+        for (SolverOptions strategy : strategies)
+            completion.submit(() -> new SokoBot(strategy, monitor).solve(initialState, deadSquares));
+
+        try {
+            for (int i = 0; i < strategies.size(); i++) {
+                Future<String> done = completion.take();
+
+                try {
+                    String path = done.get();
+
+                    if (!path.isEmpty())
+                        return path;
+                } catch (ExecutionException e) {
+                    failure = e;            // Another strategy may still succeed
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } finally {
+            pool.shutdownNow();             // Cancel the strategies that are still running
+        }
+
+        if (failure != null)
+            throw new IllegalStateException("Every strategy failed or found no solution", failure.getCause());
+
+        return "";
+    }
+}
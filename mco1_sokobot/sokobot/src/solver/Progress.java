@@ -0,0 +1,58 @@
+package solver;
+
+/**
+ * Snapshot of how far a search has come, handed to the progress listener of
+ * a {@link SearchMonitor}.
+ */
+public final class Progress {
+    private final long expanded;        // Nodes expanded so far, over every search sharing the monitor
+    private final int frontierSize;     // Open list size of the search that reported last
+    private final int bestHeuristic;    // Lowest heuristic of any node expanded so far
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param expanded      Nodes expanded so far
+     * @param frontierSize  Open list size of the search that reported last
+     * @param bestHeuristic Lowest heuristic of any node expanded so far
+     */
+    public Progress(long expanded, int frontierSize, int bestHeuristic) {
+        this.expanded = expanded;
+        this.frontierSize = frontierSize;
+        this.bestHeuristic = bestHeuristic;
+    }
+
+    /**
+     * Returns the number of nodes expanded so far.
+     *
+     * @return Node count
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Returns the open list size of the search that reported last.
+     *
+     * @return Node count
+     */
+    public int getFrontierSize() {
+        return frontierSize;
+    }
+
+    /**
+     * Returns the lowest heuristic of any node expanded so far, which is how
+     * close the search has come to a goal in estimated pushes or moves.
+     *
+     * @return Heuristic
+     */
+    public int getBestHeuristic() {
+        return bestHeuristic;
+    }
+
+    @Override
+    public String toString() {
+        return "Progress[expanded=" + expanded + ", frontier=" + frontierSize
+            + ", bestHeuristic=" + bestHeuristic + "]";
+    }
+}
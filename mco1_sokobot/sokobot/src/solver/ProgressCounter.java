@@ -0,0 +1,56 @@
+package solver;
+
+/**
+ * Counts the expansions of one search thread and passes them to a monitor in
+ * batches of {@link SearchMonitor#REPORT_INTERVAL}, so the monitor's atomics
+ * are not touched per node. It also answers the monitor's cancellation check,
+ * so a single-threaded search needs nothing else. Every engine counts through
+ * one. Not thread-safe; each search thread has its own.
+ */
+final class ProgressCounter {
+    private final SearchMonitor monitor;    // Monitor the counts go to
+    private int expanded;                   // Nodes expanded since the last report
+    private int bestHeuristic;              // Lowest heuristic expanded so far
+    private int frontierSize;               // Open list size at the last expansion
+
+    /**
+     * Creates a counter for one search thread.
+     *
+     * @param monitor   Monitor to report to
+     */
+    ProgressCounter(SearchMonitor monitor) {
+        this.monitor = monitor;
+        this.bestHeuristic = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts one expansion and reports if a batch is complete.
+     *
+     * @param heuristic     Heuristic of the expanded node
+     * @param frontierSize  Open list size of the search
+     */
+    void expanded(int heuristic, int frontierSize) {
+        this.bestHeuristic = Math.min(bestHeuristic, heuristic);
+        this.frontierSize = frontierSize;
+
+        if (++expanded == SearchMonitor.REPORT_INTERVAL)
+            flush();
+    }
+
+    /**
+     * Returns whether the search should stop.
+     *
+     * @return  True once the monitor is cancelled or the thread is interrupted
+     */
+    boolean isCancelled() {
+        return monitor.isCancelled();
+    }
+
+    /**
+     * Reports whatever was counted since the last report.
+     */
+    void flush() {
+        monitor.report(expanded, frontierSize, bestHeuristic);
+        expanded = 0;
+    }
+}
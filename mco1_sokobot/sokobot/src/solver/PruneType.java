@@ -0,0 +1,13 @@
+package solver;
+
+/**
+ * Enum representing the reasons a generated push is dropped, as counted by
+ * {@link SearchMetrics}.
+ */
+public enum PruneType {
+	DEAD_SQUARE,	// The crate was pushed onto a cell it can never leave for a goal
+	FROZEN,		// The crate froze off its goal together with its neighbours
+	PATTERN,	// The crates around the pushed one match a learned deadlock pattern
+	CORRAL,		// The push lies outside the PI-corral that must be pushed into first
+	MATCHING;	// No crate to goal matching is left, so some crate cannot be placed
+}
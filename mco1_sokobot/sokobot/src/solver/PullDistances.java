@@ -0,0 +1,244 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds push-distance tables by pulling a lone crate backwards from each
+ * goal. A crate can only be pulled when the player has room behind it and can
+ * walk around the crate to that side, so the tables only count routes along
+ * which the crate can really be pushed. Cells a crate can never be pushed
+ * from to the goal keep a distance of Integer.MAX_VALUE.
+ *
+ * The task splits the goal range in halves so each goal's table is built on
+ * its own fork-join worker.
+ */
+public class PullDistances extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] goals;          // Sorted goal cell indices
+    private final int start;            // First goal index handled by this task
+    private final int end;              // One past the last goal index handled by this task
+    private final char[][] mapData;     // 2D char array map
+    private final int width;            // Width of the map
+    private final int height;           // Height of the map
+    private final int[][] tables;       // Output tables per goal index, indexed by cell
+
+    /**
+     * Creates a task that fills the tables for a range of goals.
+     *
+     * @param goals     Sorted goal cell indices
+     * @param start     First goal index to handle
+     * @param end       One past the last goal index to handle
+     * @param mapData   2D char array map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param tables    Output tables per goal index
+     */
+    public PullDistances(int[] goals, int start, int end, char[][] mapData, int width, int height,
+                         int[][] tables) {
+        this.goals = goals;
+        this.start = start;
+        this.end = end;
+        this.mapData = mapData;
+        this.width = width;
+        this.height = height;
+        this.tables = tables;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start == 1) {
+            tables[start] = forGoal(goals[start], mapData, width, height);
+            return;
+        }
+
+        int middle = (start + end) >>> 1;
+        invokeAll(new PullDistances(goals, start, middle, mapData, width, height, tables),
+                  new PullDistances(goals, middle, end, mapData, width, height, tables));
+    }
+
+    /**
+     * Computes the number of pushes needed to bring a lone crate from every
+     * cell to the given goal.
+     *
+     * @param goal      Goal cell index
+     * @param mapData   2D char array map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @return          Push distances indexed by cell
+     */
+    public static int[] forGoal(int goal, char[][] mapData, int width, int height) {
+        int cells = width * height;
+        int[] distance = new int[cells];        // Best push distance per crate cell
+        int[] seen = new int[cells * 4];        // Distance + 1 per (crate cell, player side), 0 if unseen
+        int[] queue = new int[cells * 4];       // BFS queue of (crate cell, player side)
+        int[] fillQueue = new int[cells];       // Scratch queue for player flood fills
+        int[] marks = new int[cells];           // Scratch stamps for player flood fills
+        int[] stamp = {0};
+        Move[] moves = Move.values();
+        int head = 0;
+        int tail = 0;
+        int crate, side, player, behind, entry;
+
+        Arrays.fill(distance, Integer.MAX_VALUE);
+
+        // The last push leaves the player on any free side of the goal
+        for (Move move : moves) {
+            player = next(goal, move, mapData, width, height);
+
+            if (player >= 0 && seen[goal * 4 + move.ordinal()] == 0)
+                tail = enqueueSides(goal, player, 1, seen, queue, tail, fillQueue, marks, stamp,
+                                    mapData, width, height);
+        }
+
+        while (head < tail) {
+            entry = queue[head++];
+            crate = entry >> 2;
+            side = entry & 3;
+
+            if (distance[crate] == Integer.MAX_VALUE)
+                distance[crate] = seen[entry] - 1;
+
+            // Pull: the player steps away from the crate and drags it along
+            player = next(crate, moves[side], mapData, width, height);
+            behind = player < 0 ? -1 : next(player, moves[side], mapData, width, height);
+
+            if (behind >= 0 && seen[player * 4 + side] == 0)
+                tail = enqueueSides(player, behind, seen[entry] + 1, seen, queue, tail, fillQueue,
+                                    marks, stamp, mapData, width, height);
+        }
+
+        return distance;
+    }
+
+    /**
+     * Computes the number of pushes needed to bring a lone crate from the
+     * given cell to every other cell, the mirror image of {@link #forGoal}.
+     * The player may start on any free side of the crate.
+     *
+     * @param start     Cell index the crate starts on
+     * @param mapData   2D char array map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @return          Push distances indexed by cell
+     */
+    public static int[] fromStart(int start, char[][] mapData, int width, int height) {
+        int cells = width * height;
+        int[] distance = new int[cells];        // Best push distance per crate cell
+        int[] seen = new int[cells * 4];        // Distance + 1 per (crate cell, player side), 0 if unseen
+        int[] queue = new int[cells * 4];       // BFS queue of (crate cell, player side)
+        int[] fillQueue = new int[cells];       // Scratch queue for player flood fills
+        int[] marks = new int[cells];           // Scratch stamps for player flood fills
+        int[] stamp = {0};
+        Move[] moves = Move.values();
+        int head = 0;
+        int tail = 0;
+        int crate, side, player, target, entry;
+
+        Arrays.fill(distance, Integer.MAX_VALUE);
+
+        for (Move move : moves) {
+            player = next(start, move, mapData, width, height);
+
+            if (player >= 0 && seen[start * 4 + move.ordinal()] == 0)
+                tail = enqueueSides(start, player, 1, seen, queue, tail, fillQueue, marks, stamp,
+                                    mapData, width, height);
+        }
+
+        while (head < tail) {
+            entry = queue[head++];
+            crate = entry >> 2;
+            side = entry & 3;
+
+            if (distance[crate] == Integer.MAX_VALUE)
+                distance[crate] = seen[entry] - 1;
+
+            // Push: the player walks into the crate from its side and moves it away
+            target = next(crate, moves[side].opposite(), mapData, width, height);
+
+            if (target >= 0)
+                tail = enqueueSides(target, crate, seen[entry] + 1, seen, queue, tail, fillQueue,
+                                    marks, stamp, mapData, width, height);
+        }
+
+        return distance;
+    }
+
+    /**
+     * Queues every side of a crate the player can walk to from its cell
+     * without passing through the crate.
+     *
+     * @param crate     Cell index of the crate
+     * @param player    Cell index of the player
+     * @param value     Distance + 1 to record for the new entries
+     * @param seen      Distance + 1 per (crate cell, player side)
+     * @param queue     BFS queue of (crate cell, player side)
+     * @param tail      Current tail of the BFS queue
+     * @param fillQueue Scratch queue for the flood fill
+     * @param marks     Scratch stamps for the flood fill
+     * @param stamp     Single-element holder of the current stamp
+     * @param mapData   2D char array map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @return          New tail of the BFS queue
+     */
+    private static int enqueueSides(int crate, int player, int value, int[] seen, int[] queue, int tail,
+                                    int[] fillQueue, int[] marks, int[] stamp,
+                                    char[][] mapData, int width, int height) {
+        int head = 0;
+        int fillTail = 0;
+        int cell, next, side;
+
+        stamp[0]++;
+        marks[player] = stamp[0];
+        marks[crate] = stamp[0];            // The crate blocks the player
+        fillQueue[fillTail++] = player;
+
+        while (head < fillTail) {
+            cell = fillQueue[head++];
+
+            for (Move move : Move.values()) {
+                next = next(cell, move, mapData, width, height);
+
+                if (next >= 0 && marks[next] != stamp[0]) {
+                    marks[next] = stamp[0];
+                    fillQueue[fillTail++] = next;
+                }
+            }
+        }
+
+        for (Move move : Move.values()) {
+            cell = next(crate, move, mapData, width, height);
+            side = crate * 4 + move.ordinal();
+
+            if (cell >= 0 && marks[cell] == stamp[0] && seen[side] == 0) {
+                seen[side] = value;
+                queue[tail++] = side;
+            }
+        }
+
+        return tail;
+    }
+
+    /**
+     * Returns the floor cell next to the given one.
+     *
+     * @param cell      Cell index
+     * @param move      Direction to look in
+     * @param mapData   2D char array map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @return          Neighbour cell index, or -1 for walls and cells outside the map
+     */
+    private static int next(int cell, Move move, char[][] mapData, int width, int height) {
+        int row = cell / width + move.getRowDelta();
+        int column = cell % width + move.getColumnDelta();
+
+        if (row < 0 || row >= height || column < 0 || column >= width
+            || State.isWall(row, column, mapData))
+            return -1;
+
+        return row * width + column;
+    }
+}
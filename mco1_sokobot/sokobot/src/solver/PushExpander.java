@@ -0,0 +1,315 @@
+package solver;
+
+/**
+ * Generates the children of a state for the push-level search: every push the
+ * player can walk up to, minus deadlocks and pushes outside a PI-corral, with
+ * the player normalized to the smallest cell it can walk to afterwards and the
+ * Hungarian heuristic of each child. Pushes along a tunnel or into a goal
+ * room are carried through as one macro push, see {@link Macros}.
+ *
+ * The children of the last call to {@link #expand} are kept in reused buffers,
+ * and the flood fill, deadlock detector and matching are all stateful, so an
+ * instance must not be shared between threads. Each search thread creates its
+ * own.
+ */
+public class PushExpander {
+    private static final Move[] MOVES = Move.values();
+
+    private final Reachability reach;           // Flood fill of the player
+    private final DeadlockDetector deadlocks;   // Deadlock detector for the level
+    private final CorralPruner corrals;         // PI-corral pruner sharing the flood fill
+    private final Assignment assignment;        // Incremental Hungarian heuristic
+    private final Macros macros;                // Tunnels and goal rooms of the level
+    private final SearchMetrics metrics;        // Counters of the search, null if not counting
+    private final int[] pushes;                 // Legal pushes of the expanded state
+    private final State[] children;             // Children of the last expansion
+    private final byte[] childMoves;            // Push direction of each child
+    private final int[] childFrom;              // Cell the crate was pushed from for each child
+    private final int[] childTo;                // Cell the crate ended on for each child
+    private final int[] childHeuristics;        // Heuristic of each child
+    private int childCount;                     // Number of children of the last expansion
+
+    /**
+     * Creates an expander for the level the state belongs to.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param learnPatterns Whether to learn deadlock patterns during the search
+     */
+    public PushExpander(State initialState, boolean[] deadSquares, boolean learnPatterns) {
+        this(initialState, deadSquares, learnPatterns, null);
+    }
+
+    /**
+     * Creates an expander that counts its prunes, duplicates and heuristic
+     * time into the given metrics.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param learnPatterns Whether to learn deadlock patterns during the search
+     * @param metrics       Counters of the search, or null to count nothing
+     */
+    public PushExpander(State initialState, boolean[] deadSquares, boolean learnPatterns, SearchMetrics metrics) {
+        char[][] mapData = initialState.getMap();
+        int width = initialState.getWidth();
+        int height = mapData.length;
+        int crateCount = initialState.getCrates().length;
+
+        this.reach = new Reachability(mapData, width, height);
+        this.deadlocks = new DeadlockDetector(deadSquares, reach, learnPatterns
+            ? new DeadlockPatterns(mapData, width, height, deadSquares) : null);
+        this.corrals = new CorralPruner(reach, width * height, crateCount);
+        this.assignment = new Assignment(initialState.getLevel().getDistances());
+        this.macros = initialState.getLevel().getMacros();
+        this.pushes = new int[crateCount * MOVES.length];
+        this.children = new State[pushes.length];
+        this.childMoves = new byte[pushes.length];
+        this.childFrom = new int[pushes.length];
+        this.childTo = new int[pushes.length];
+        this.childHeuristics = new int[pushes.length];
+        this.metrics = metrics;
+    }
+
+    /**
+     * Moves the player to the smallest cell it can walk to, which is how every
+     * state of the push-level search is stored.
+     *
+     * @param state State with the player anywhere
+     * @return      The same position with the player normalized
+     */
+    public State normalize(State state) {
+        return state.moveTo(reach.fill(state, state.getPlayer()));
+    }
+
+    /**
+     * Computes the heuristic of a state from scratch.
+     *
+     * @param state State to estimate
+     * @return      Cost of the best crate to goal matching, INFEASIBLE or more if none
+     */
+    public int estimate(State state) {
+        return assignment.solve(state.getCrates());
+    }
+
+    /**
+     * Generates the children of a state. Children found in the given closed
+     * set are skipped before their heuristic is computed, as are deadlocks and
+     * children without a feasible matching.
+     *
+     * @param state     Normalized state to expand
+     * @param seen      Closed set to skip children from, or null to keep them all
+     * @return          Number of children, read back with {@link #child}
+     */
+    public int expand(State state, VisitedSet seen) {
+        int[] crates = state.getCrates();
+        int pushCount = 0;
+        int crate, target, heuristic;
+
+        // Collect every push the player can walk up to
+        reach.fill(state, state.getPlayer());
+
+        for (int i = 0; i < crates.length; i++) {
+            crate = crates[i];
+
+            for (Move move : MOVES) {
+                target = reach.neighbour(crate, move);
+
+                if (target >= 0 && !state.hasCrateAt(target)
+                    && reach.isReachable(reach.neighbour(crate, move.opposite())))
+                    pushes[pushCount++] = i * MOVES.length + move.ordinal();
+            }
+        }
+
+        // Only push into a PI-corral if there is one
+        int legal = pushCount;
+        pushCount = corrals.prune(state, pushes, pushCount);
+
+        if (metrics != null)
+            metrics.pruned(PruneType.CORRAL, legal - pushCount);
+
+        // Apply them; the flood fill for normalizing overwrites the marks above
+        long started = metrics != null ? System.nanoTime() : 0;
+        assignment.solve(crates);
+        if (metrics != null)
+            metrics.heuristic(System.nanoTime() - started);
+        childCount = 0;
+
+        for (int p = 0; p < pushCount; p++) {
+            Move move = MOVES[pushes[p] % MOVES.length];
+            crate = crates[pushes[p] / MOVES.length];
+            target = macros.push(state, crate, move);
+
+            State pushed = state.pushTo(crate, crate, target);
+
+            if (SokoBot.isInDeadlock(deadlocks, pushed, target)) {
+                if (metrics != null)
+                    metrics.deadlock(deadlocks, pushed, target);
+                continue;
+            }
+
+            // The player can always walk back to where the crate started
+            State next = pushed.moveTo(reach.fill(pushed, crate));
+
+            if (seen != null) {
+                boolean duplicate = seen.contains(next);
+
+                if (metrics != null)
+                    metrics.visitedLookup(duplicate);
+                if (duplicate)
+                    continue;
+            }
+
+            if (metrics == null)
+                heuristic = assignment.update(crate, target);
+            else {
+                started = System.nanoTime();
+                heuristic = assignment.update(crate, target);
+                metrics.heuristic(System.nanoTime() - started);
+            }
+
+            if (heuristic >= Assignment.INFEASIBLE) {   // No matching left, so a deadlock
+                if (metrics != null)
+                    metrics.pruned(PruneType.MATCHING, 1);
+                continue;
+            }
+
+            children[childCount] = next;
+            childMoves[childCount] = (byte) move.ordinal();
+            childFrom[childCount] = crate;
+            childTo[childCount] = target;
+            childHeuristics[childCount] = heuristic;
+            childCount++;
+        }
+
+        return childCount;
+    }
+
+    /**
+     * Finds the cell a crate ends on when pushed, with the macro pushes of the
+     * level applied the same way {@link #expand} applies them.
+     *
+     * @param state Current state of the board
+     * @param crate Cell of the crate to push
+     * @param move  Direction of the push, which must be legal
+     * @return      Cell the crate ends on
+     */
+    public int landing(State state, int crate, Move move) {
+        return macros.push(state, crate, move);
+    }
+
+    /**
+     * Returns a child of the last expansion.
+     *
+     * @param i Index below the count returned by {@link #expand}
+     * @return  Child state, normalized
+     */
+    public State child(int i) {
+        return children[i];
+    }
+
+    /**
+     * Returns the push direction of a child of the last expansion.
+     *
+     * @param i Index below the count returned by {@link #expand}
+     * @return  Direction the crate was pushed in
+     */
+    public Move move(int i) {
+        return MOVES[childMoves[i]];
+    }
+
+    /**
+     * Returns the cell the crate was pushed from for a child of the last expansion.
+     *
+     * @param i Index below the count returned by {@link #expand}
+     * @return  Cell index of the crate before the push
+     */
+    public int pushedFrom(int i) {
+        return childFrom[i];
+    }
+
+    /**
+     * Returns the number of pushes that lead to a child of the last
+     * expansion, more than one when a macro push carried the crate on.
+     *
+     * @param i Index below the count returned by {@link #expand}
+     * @return  Pushes from the parent to the child
+     */
+    public int pushes(int i) {
+        return macros.pushes(childFrom[i], MOVES[childMoves[i]], childTo[i]);
+    }
+
+    /**
+     * Returns the heuristic of a child of the last expansion.
+     *
+     * @param i Index below the count returned by {@link #expand}
+     * @return  Cost of the best crate to goal matching
+     */
+    public int heuristic(int i) {
+        return childHeuristics[i];
+    }
+
+    /**
+     * Rebuilds the full move string of a push-level solution by adding the
+     * walk the player takes before each push, and the pushes and walks inside
+     * each macro push.
+     *
+     * @param goal            Node holding the solved state
+     * @param initialState    State the level starts in, with the real player cell
+     * @return                A string representing the sequence of moves
+     */
+    public String rebuildPath(Node goal, State initialState) {
+        Node[] chain = new Node[goal.depth + 1];
+        StringBuilder path = new StringBuilder();
+        int player = initialState.getPlayer();
+
+        for (Node node = goal; node != null; node = node.parent)
+            chain[node.depth] = node;
+
+        for (int i = 1; i < chain.length; i++) {
+            Move move = MOVES[chain[i].move];
+            int crate = movedCrate(chain[i - 1].state, chain[i].state);
+            int landed = movedCrate(chain[i].state, chain[i - 1].state);     // Swapped, so where it went
+            String pushes = macros.path(crate, move, landed);
+
+            path.append(reach.walk(chain[i - 1].state, player, reach.neighbour(crate, move.opposite())));
+            path.append(pushes);
+            player = reach.neighbour(crate, move.opposite());
+
+            for (int c = 0; c < pushes.length(); c++)
+                player = reach.neighbour(player, command(pushes.charAt(c)));
+        }
+
+        return path.toString();
+    }
+
+    /**
+     * Returns the move a command character stands for.
+     *
+     * @param command   'u', 'd', 'l' or 'r'
+     * @return          Move of the command
+     */
+    private static Move command(char command) {
+        for (Move move : MOVES) {
+            if (move.toCommand() == command)
+                return move;
+        }
+
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    /**
+     * Finds the crate that was pushed between two states that differ by one push.
+     *
+     * @param before  State before the push
+     * @param after   State after the push
+     * @return        Cell index the crate was pushed from
+     */
+    private static int movedCrate(State before, State after) {
+        for (int crate : before.getCrates()) {
+            if (!after.hasCrateAt(crate))
+                return crate;
+        }
+
+        throw new IllegalStateException("No crate moved between " + before + " and " + after);
+    }
+}
@@ -0,0 +1,143 @@
+package solver;
+
+/**
+ * Flood fill over the cells the player can walk to without pushing a crate.
+ * Used by the push-level search to normalize the player position and to find
+ * which crate faces the player can stand behind. Buffers are allocated once
+ * per level and reused, so an instance must not be shared between threads.
+ */
+public class Reachability {
+    private final int[] neighbours;     // Neighbour cell per cell and move ordinal, -1 if wall or outside
+    private final boolean[] crateMap;   // Scratch crate lookup filled for each flood fill
+    private final int[] marks;          // Stamp of the last fill that reached each cell
+    private final int[] queue;          // BFS queue of cell indices
+    private final int[] previous;       // Cell each cell was reached from, used to rebuild walks
+    private int stamp;                  // Current fill number
+
+    /**
+     * Precomputes the neighbour table of a level.
+     *
+     * @param mapData   2D char array representing the map
+     * @param width     Width of the map
+     * @param height    Height of the map
+     */
+    public Reachability(char[][] mapData, int width, int height) {
+        int cells = width * height;
+        int row, column;
+        Move[] moves = Move.values();
+
+        this.neighbours = new int[cells * moves.length];
+        this.crateMap = new boolean[cells];
+        this.marks = new int[cells];
+        this.queue = new int[cells];
+        this.previous = new int[cells];
+
+        for (int cell = 0; cell < cells; cell++) {
+            for (Move move : moves) {
+                row = cell / width + move.getRowDelta();
+                column = cell % width + move.getColumnDelta();
+
+                if (row >= 0 && row < height && column >= 0 && column < width
+                    && !State.isWall(row, column, mapData))
+                    neighbours[cell * moves.length + move.ordinal()] = row * width + column;
+                else
+                    neighbours[cell * moves.length + move.ordinal()] = -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the cell next to the given one in the direction of a move.
+     *
+     * @param cell  Cell index
+     * @param move  Direction to look in
+     * @return      Neighbour cell index, or -1 if it is a wall or outside the map
+     */
+    public int neighbour(int cell, Move move) {
+        return neighbours[cell * 4 + move.ordinal()];
+    }
+
+    /**
+     * Marks every cell the player can walk to from the start cell without
+     * pushing any crate of the given state.
+     *
+     * @param state Current state of the board
+     * @param start Cell the player starts from
+     * @return      Smallest reachable cell index, used as the canonical player position
+     */
+    public int fill(State state, int start) {
+        int head = 0;
+        int tail = 0;
+        int smallest = start;
+        int cell, next;
+
+        for (int crate : state.getCrates())
+            crateMap[crate] = true;
+
+        stamp++;
+        marks[start] = stamp;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            cell = queue[head++];
+
+            for (int i = cell * 4; i < cell * 4 + 4; i++) {
+                next = neighbours[i];
+
+                if (next >= 0 && marks[next] != stamp && !crateMap[next]) {
+                    marks[next] = stamp;
+                    previous[next] = cell;
+                    queue[tail++] = next;
+
+                    if (next < smallest)
+                        smallest = next;
+                }
+            }
+        }
+
+        for (int crate : state.getCrates())
+            crateMap[crate] = false;
+
+        return smallest;
+    }
+
+    /**
+     * Checks if the last flood fill reached the given cell.
+     *
+     * @param cell  Cell index
+     * @return      True if the player can walk to the cell, false otherwise
+     */
+    public boolean isReachable(int cell) {
+        return cell >= 0 && marks[cell] == stamp;
+    }
+
+    /**
+     * Finds the shortest walk between two cells around the crates of a state.
+     *
+     * @param state Current state of the board
+     * @param from  Cell the player starts from
+     * @param to    Cell the player has to reach
+     * @return      Move string of the walk, or null if the cell cannot be reached
+     */
+    public String walk(State state, int from, int to) {
+        StringBuilder path = new StringBuilder();
+        Move[] moves = Move.values();
+
+        fill(state, from);
+
+        if (!isReachable(to))
+            return null;
+
+        // Follow the BFS links back from the target and record each step
+        for (int cell = to; cell != from; cell = previous[cell]) {
+            for (Move move : moves) {
+                if (neighbour(previous[cell], move) == cell) {
+                    path.append(move.toCommand());
+                    break;
+                }
+            }
+        }
+
+        return path.reverse().toString();
+    }
+}
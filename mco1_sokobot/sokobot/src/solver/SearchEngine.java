@@ -0,0 +1,14 @@
+package solver;
+
+/**
+ * Enum representing the search algorithm the Sokobot runs.
+ */
+public enum SearchEngine {
+	ASTAR,		// A single A* search on the calling thread
+	PARALLEL,	// Hash-distributed A* over several worker threads, always push-level
+	PORTFOLIO,	// Several differently configured searches racing, first solution wins
+	BIDIRECTIONAL,	// Forward pushes meeting backward pulls from the solved state, push-level
+	IDASTAR,	// Iterative deepening over pushes on one mutable board, flat memory
+	ANYTIME,	// Weighted A* passes with falling weights, best solution by the time limit
+	EXTERNAL;	// Push-level A* keeping cold open list buckets and expanded nodes on disk
+}
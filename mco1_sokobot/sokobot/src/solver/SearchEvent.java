@@ -0,0 +1,59 @@
+package solver;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event spanning one A* search, with its totals. Committed
+ * when the search returns, whether or not it found a solution.
+ */
+@Name("sokobot.Search")
+@Label("Sokobot Search")
+@Category("Sokobot")
+@Description("One A* search of a level with its node, duplicate and prune counts")
+@StackTrace(false)
+class SearchEvent extends jdk.jfr.Event {
+    @Label("Mode")
+    String mode;                // MOVES or PUSHES
+
+    @Label("Solved")
+    boolean solved;             // Whether a solution was found
+
+    @Label("Expanded")
+    long expanded;              // Nodes taken off the open list
+
+    @Label("Generated")
+    long generated;             // Nodes added to the open list
+
+    @Label("Visited Lookups")
+    long visitedLookups;        // Children looked up in the closed set
+
+    @Label("Duplicates")
+    long duplicates;            // Children found in the closed set
+
+    @Label("Dead Square Prunes")
+    long deadSquarePrunes;      // Pushes onto dead squares
+
+    @Label("Frozen Prunes")
+    long frozenPrunes;          // Pushes that froze crates off goals
+
+    @Label("Pattern Prunes")
+    long patternPrunes;         // Pushes matching learned patterns
+
+    @Label("Corral Prunes")
+    long corralPrunes;          // Pushes outside a PI-corral
+
+    @Label("Matching Prunes")
+    long matchingPrunes;        // Pushes leaving no crate to goal matching
+
+    @Label("Heuristic Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long heuristicNanos;        // Time spent in the Hungarian heuristic
+
+    @Label("Peak Frontier")
+    int peakFrontier;           // Largest open list size seen at an expansion
+}
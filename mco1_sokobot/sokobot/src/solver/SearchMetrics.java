@@ -0,0 +1,219 @@
+package solver;
+
+import java.util.Arrays;
+
+import jdk.jfr.EventType;
+
+/**
+ * Counters of one A* search: expansions, duplicates, prunes by type, time in
+ * the heuristic, open list size over time and the g and h values expanded.
+ * A search only gets an instance when metrics are asked for in the options
+ * or a Flight Recorder recording has the Sokobot events on; otherwise it runs
+ * with none and every counting site is a skipped null check. An instance is
+ * only used by the thread running its search.
+ */
+public final class SearchMetrics {
+    private final long startNanos;          // System.nanoTime() when the search started
+    private final SearchEvent event;        // Flight Recorder event spanning the search
+    private long expanded;                  // Nodes taken off the open list
+    private long generated;                 // Nodes added to the open list
+    private long visitedLookups;            // Children looked up in the closed set
+    private long duplicates;                // Children found in the closed set
+    private final long[] prunes;            // Pushes dropped, per prune type
+    private long heuristicNanos;            // Time spent in the heuristic
+    private long heuristicCalls;            // Heuristic evaluations, full and incremental
+    private int peakFrontier;               // Largest open list size seen at an expansion
+    private int bestHeuristic;              // Lowest heuristic expanded
+    private int[] frontierSamples;          // Open list size every REPORT_INTERVAL expansions
+    private int sampleCount;                // Number of samples taken
+    private long[] depthCounts;             // Nodes expanded per depth (g)
+    private long[] heuristicCounts;         // Nodes expanded per heuristic (h)
+    private long finishNanos;               // System.nanoTime() when the search returned, 0 before
+
+    /**
+     * Starts counting a search.
+     */
+    public SearchMetrics() {
+        this.startNanos = System.nanoTime();
+        this.event = new SearchEvent();
+        this.event.begin();
+        this.prunes = new long[PruneType.values().length];
+        this.bestHeuristic = Integer.MAX_VALUE;
+        this.frontierSamples = new int[64];
+        this.depthCounts = new long[64];
+        this.heuristicCounts = new long[64];
+    }
+
+    /**
+     * Creates the metrics a search should count with.
+     *
+     * @param enabled   Whether metrics were asked for in the options
+     * @return          New metrics, or null if neither the options nor a recording want them
+     */
+    static SearchMetrics create(boolean enabled) {
+        if (enabled || EventType.getEventType(SearchEvent.class).isEnabled())
+            return new SearchMetrics();
+
+        return null;
+    }
+
+    /**
+     * Counts a node taken off the open list.
+     *
+     * @param depth         Depth of the node (g)
+     * @param heuristic     Heuristic of the node (h)
+     * @param frontierSize  Open list size after taking it off
+     */
+    void expanded(int depth, int heuristic, int frontierSize) {
+        expanded++;
+        peakFrontier = Math.max(peakFrontier, frontierSize);
+        bestHeuristic = Math.min(bestHeuristic, heuristic);
+        depthCounts = count(depthCounts, depth);
+        heuristicCounts = count(heuristicCounts, heuristic);
+
+        if (expanded % SearchMonitor.REPORT_INTERVAL == 0) {
+            if (sampleCount == frontierSamples.length)
+                frontierSamples = Arrays.copyOf(frontierSamples, sampleCount * 2);
+            frontierSamples[sampleCount++] = frontierSize;
+
+            SearchSampleEvent event = new SearchSampleEvent();
+            if (event.shouldCommit()) {
+                event.expanded = expanded;
+                event.generated = generated;
+                event.duplicates = duplicates;
+                event.frontier = frontierSize;
+                event.depth = depth;
+                event.bestHeuristic = bestHeuristic;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Counts a node added to the open list.
+     */
+    void generated() {
+        generated++;
+    }
+
+    /**
+     * Counts a child looked up in the closed set.
+     *
+     * @param hit   True if it was already there
+     */
+    void visitedLookup(boolean hit) {
+        visitedLookups++;
+        if (hit)
+            duplicates++;
+    }
+
+    /**
+     * Counts pushes dropped for one reason.
+     *
+     * @param type  Reason they were dropped
+     * @param count Number of pushes
+     */
+    void pruned(PruneType type, int count) {
+        prunes[type.ordinal()] += count;
+    }
+
+    /**
+     * Counts a push the deadlock checks dropped, under the first check that
+     * catches it. Only called for pushes already known to be deadlocked, and
+     * the checks before the patterns have no side effects, so running them
+     * again does not change the search.
+     *
+     * @param deadlocks     Deadlock detector of the search
+     * @param state         State right after the push
+     * @param movedCrate    Cell the crate was pushed to
+     */
+    void deadlock(DeadlockDetector deadlocks, State state, int movedCrate) {
+        if (deadlocks.isDeadSquare(movedCrate))
+            prunes[PruneType.DEAD_SQUARE.ordinal()]++;
+        else if (deadlocks.isFrozen(state, movedCrate))
+            prunes[PruneType.FROZEN.ordinal()]++;
+        else
+            prunes[PruneType.PATTERN.ordinal()]++;
+    }
+
+    /**
+     * Adds the time of one heuristic evaluation.
+     *
+     * @param nanos Time taken
+     */
+    void heuristic(long nanos) {
+        heuristicNanos += nanos;
+        heuristicCalls++;
+    }
+
+    /**
+     * Stops the clock and commits the Flight Recorder event of the search.
+     *
+     * @param mode      Granularity of the search
+     * @param solved    Whether a solution was found
+     */
+    void finish(SearchMode mode, boolean solved) {
+        finishNanos = System.nanoTime();
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.mode = mode.name();
+            event.solved = solved;
+            event.expanded = expanded;
+            event.generated = generated;
+            event.visitedLookups = visitedLookups;
+            event.duplicates = duplicates;
+            event.deadSquarePrunes = prunes[PruneType.DEAD_SQUARE.ordinal()];
+            event.frozenPrunes = prunes[PruneType.FROZEN.ordinal()];
+            event.patternPrunes = prunes[PruneType.PATTERN.ordinal()];
+            event.corralPrunes = prunes[PruneType.CORRAL.ordinal()];
+            event.matchingPrunes = prunes[PruneType.MATCHING.ordinal()];
+            event.heuristicNanos = heuristicNanos;
+            event.peakFrontier = peakFrontier;
+            event.commit();
+        }
+    }
+
+    /**
+     * Copies the counters into an immutable snapshot.
+     *
+     * @return  Snapshot of the counts so far
+     */
+    public SearchStats snapshot() {
+        long elapsed = (finishNanos == 0 ? System.nanoTime() : finishNanos) - startNanos;
+
+        return new SearchStats(elapsed, expanded, generated, visitedLookups, duplicates, prunes.clone(),
+            heuristicNanos, heuristicCalls, peakFrontier, bestHeuristic,
+            Arrays.copyOf(frontierSamples, sampleCount), trim(depthCounts), trim(heuristicCounts));
+    }
+
+    /**
+     * Adds one to a histogram bucket, growing the histogram if needed.
+     *
+     * @param counts    Counts per value
+     * @param value     Value to count, 0 or more
+     * @return          The histogram, possibly a grown copy
+     */
+    private static long[] count(long[] counts, int value) {
+        if (value >= counts.length)
+            counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+
+        counts[value]++;
+        return counts;
+    }
+
+    /**
+     * Copies a histogram without its trailing empty buckets.
+     *
+     * @param counts    Counts per value
+     * @return          Trimmed copy
+     */
+    private static long[] trim(long[] counts) {
+        int length = counts.length;
+
+        while (length > 0 && counts[length - 1] == 0)
+            length--;
+
+        return Arrays.copyOf(counts, length);
+    }
+}
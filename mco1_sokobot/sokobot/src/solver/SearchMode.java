@@ -0,0 +1,9 @@
+package solver;
+
+/**
+ * Enum representing the granularity of the search done by the Sokobot.
+ */
+public enum SearchMode {
+	MOVES,		// Every single player step is a node
+	PUSHES;		// Every crate push is a node; walking between pushes is implied
+}
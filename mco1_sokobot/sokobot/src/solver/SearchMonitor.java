@@ -0,0 +1,93 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cancellation token and progress sink shared by the searches of one solve.
+ * Searches check {@link #isCancelled()} in their expansion loop and report
+ * their counts every {@link #REPORT_INTERVAL} expansions; the listener is
+ * called at most every 100 ms, on whichever search thread reported. Several
+ * searches may share one monitor, as the portfolio does, in which case the
+ * expansions are summed and the best heuristic is the lowest of them all.
+ */
+public class SearchMonitor {
+    public static final int REPORT_INTERVAL = 1024;     // Expansions between two reports of a search
+    private static final long NOTIFY_NANOS = 100_000_000L; // Least time between two listener calls
+
+    private final Consumer<Progress> listener;  // Called with progress snapshots, or null
+    private final AtomicLong expanded;          // Nodes expanded over every search
+    private final AtomicInteger bestHeuristic;  // Lowest heuristic expanded over every search
+    private final AtomicLong nextNotify;        // System.nanoTime() before which the listener is not called
+    private volatile boolean cancelled;         // Set once the searches should give up
+
+    /**
+     * Creates a monitor that only acts as a cancellation token.
+     */
+    public SearchMonitor() {
+        this(null);
+    }
+
+    /**
+     * Creates a monitor that passes progress to a listener.
+     *
+     * @param listener  Called with progress snapshots, or null
+     */
+    public SearchMonitor(Consumer<Progress> listener) {
+        this.listener = listener;
+        this.expanded = new AtomicLong();
+        this.bestHeuristic = new AtomicInteger(Integer.MAX_VALUE);
+        this.nextNotify = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Asks every search using this monitor to stop. They return no solution
+     * the next time they check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the searches should stop, either because the monitor was
+     * cancelled or because the calling thread was interrupted.
+     *
+     * @return  True if the search should return
+     */
+    public boolean isCancelled() {
+        return cancelled || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Adds the work of a search since its last report and passes a snapshot
+     * to the listener if enough time has gone by.
+     *
+     * @param newlyExpanded Nodes the search expanded since its last report
+     * @param frontierSize  Open list size of the search
+     * @param heuristic     Lowest heuristic the search expanded since its last report
+     */
+    public void report(int newlyExpanded, int frontierSize, int heuristic) {
+        long total = expanded.addAndGet(newlyExpanded);
+        int best = bestHeuristic.accumulateAndGet(heuristic, Math::min);
+
+        if (listener == null)
+            return;
+
+        long now = System.nanoTime();
+        long due = nextNotify.get();
+
+        // Only the thread that moves the deadline on calls the listener
+        if (now - due >= 0 && nextNotify.compareAndSet(due, now + NOTIFY_NANOS))
+            listener.accept(new Progress(total, frontierSize, best));
+    }
+
+    /**
+     * Returns a snapshot of the progress reported so far.
+     *
+     * @return  Progress with a frontier size of 0
+     */
+    public Progress snapshot() {
+        return new Progress(expanded.get(), 0, bestHeuristic.get());
+    }
+}
@@ -0,0 +1,37 @@
+package solver;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event taken every {@link SearchMonitor#REPORT_INTERVAL}
+ * expansions of an A* search, so the open list size and the counts can be
+ * plotted over time.
+ */
+@Name("sokobot.SearchSample")
+@Label("Sokobot Search Sample")
+@Category("Sokobot")
+@Description("Running counts and open list size of an A* search")
+@StackTrace(false)
+class SearchSampleEvent extends jdk.jfr.Event {
+    @Label("Expanded")
+    long expanded;              // Nodes taken off the open list so far
+
+    @Label("Generated")
+    long generated;             // Nodes added to the open list so far
+
+    @Label("Duplicates")
+    long duplicates;            // Children found in the closed set so far
+
+    @Label("Frontier")
+    int frontier;               // Open list size now
+
+    @Label("Depth")
+    int depth;                  // Depth of the node just expanded
+
+    @Label("Best Heuristic")
+    int bestHeuristic;          // Lowest heuristic expanded so far
+}
@@ -0,0 +1,216 @@
+package solver;
+
+/**
+ * Immutable snapshot of the counters of one A* search, returned with the
+ * solution by {@link SokoBot#solveWithMetrics}. Arrays handed out are shared
+ * and must not be modified.
+ */
+public final class SearchStats {
+    private final long elapsedNanos;        // Time the search ran
+    private final long expanded;            // Nodes taken off the open list
+    private final long generated;           // Nodes added to the open list
+    private final long visitedLookups;      // Children looked up in the closed set
+    private final long duplicates;          // Children found in the closed set
+    private final long[] prunes;            // Pushes dropped, per prune type
+    private final long heuristicNanos;      // Time spent in the heuristic
+    private final long heuristicCalls;      // Heuristic evaluations
+    private final int peakFrontier;         // Largest open list size seen at an expansion
+    private final int bestHeuristic;        // Lowest heuristic expanded
+    private final int[] frontierSamples;    // Open list size every REPORT_INTERVAL expansions
+    private final long[] depthCounts;       // Nodes expanded per depth (g)
+    private final long[] heuristicCounts;   // Nodes expanded per heuristic (h)
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param elapsedNanos      Time the search ran
+     * @param expanded          Nodes taken off the open list
+     * @param generated         Nodes added to the open list
+     * @param visitedLookups    Children looked up in the closed set
+     * @param duplicates        Children found in the closed set
+     * @param prunes            Pushes dropped, indexed by prune type ordinal
+     * @param heuristicNanos    Time spent in the heuristic
+     * @param heuristicCalls    Heuristic evaluations
+     * @param peakFrontier      Largest open list size seen at an expansion
+     * @param bestHeuristic     Lowest heuristic expanded
+     * @param frontierSamples   Open list size every REPORT_INTERVAL expansions
+     * @param depthCounts       Nodes expanded per depth
+     * @param heuristicCounts   Nodes expanded per heuristic
+     */
+    SearchStats(long elapsedNanos, long expanded, long generated, long visitedLookups, long duplicates,
+            long[] prunes, long heuristicNanos, long heuristicCalls, int peakFrontier, int bestHeuristic,
+            int[] frontierSamples, long[] depthCounts, long[] heuristicCounts) {
+        this.elapsedNanos = elapsedNanos;
+        this.expanded = expanded;
+        this.generated = generated;
+        this.visitedLookups = visitedLookups;
+        this.duplicates = duplicates;
+        this.prunes = prunes;
+        this.heuristicNanos = heuristicNanos;
+        this.heuristicCalls = heuristicCalls;
+        this.peakFrontier = peakFrontier;
+        this.bestHeuristic = bestHeuristic;
+        this.frontierSamples = frontierSamples;
+        this.depthCounts = depthCounts;
+        this.heuristicCounts = heuristicCounts;
+    }
+
+    /**
+     * Returns how long the search ran.
+     *
+     * @return Time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of nodes taken off the open list.
+     *
+     * @return Node count
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Returns the number of nodes added to the open list.
+     *
+     * @return Node count
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    /**
+     * Returns the nodes expanded per second of search.
+     *
+     * @return Expansion rate
+     */
+    public double getExpandedPerSecond() {
+        return elapsedNanos == 0 ? 0 : expanded * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the nodes generated per second of search.
+     *
+     * @return Generation rate
+     */
+    public double getGeneratedPerSecond() {
+        return elapsedNanos == 0 ? 0 : generated * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of children looked up in the closed set.
+     *
+     * @return Lookup count
+     */
+    public long getVisitedLookups() {
+        return visitedLookups;
+    }
+
+    /**
+     * Returns the number of children found in the closed set.
+     *
+     * @return Duplicate count
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the share of closed set lookups that found the child there.
+     *
+     * @return Hit rate between 0 and 1
+     */
+    public double getDuplicateRate() {
+        return visitedLookups == 0 ? 0 : (double) duplicates / visitedLookups;
+    }
+
+    /**
+     * Returns the number of pushes dropped for one reason.
+     *
+     * @param type  Reason
+     * @return      Push count
+     */
+    public long getPrunes(PruneType type) {
+        return prunes[type.ordinal()];
+    }
+
+    /**
+     * Returns the time spent in the heuristic.
+     *
+     * @return Time in nanoseconds
+     */
+    public long getHeuristicNanos() {
+        return heuristicNanos;
+    }
+
+    /**
+     * Returns the number of heuristic evaluations, full and incremental.
+     *
+     * @return Evaluation count
+     */
+    public long getHeuristicCalls() {
+        return heuristicCalls;
+    }
+
+    /**
+     * Returns the largest open list size seen at an expansion.
+     *
+     * @return Node count
+     */
+    public int getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    /**
+     * Returns the lowest heuristic of any node expanded.
+     *
+     * @return Heuristic, Integer.MAX_VALUE if nothing was expanded
+     */
+    public int getBestHeuristic() {
+        return bestHeuristic;
+    }
+
+    /**
+     * Returns the open list size taken every
+     * {@link SearchMonitor#REPORT_INTERVAL} expansions, oldest first.
+     *
+     * @return Open list sizes
+     */
+    public int[] getFrontierSamples() {
+        return frontierSamples;
+    }
+
+    /**
+     * Returns how many nodes were expanded at each depth (g).
+     *
+     * @return Node counts indexed by depth
+     */
+    public long[] getDepthCounts() {
+        return depthCounts;
+    }
+
+    /**
+     * Returns how many nodes were expanded with each heuristic (h).
+     *
+     * @return Node counts indexed by heuristic
+     */
+    public long[] getHeuristicCounts() {
+        return heuristicCounts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pruned = new StringBuilder();
+
+        for (PruneType type : PruneType.values())
+            pruned.append(pruned.length() == 0 ? "" : ", ").append(type).append('=').append(getPrunes(type));
+
+        return String.format("SearchStats[%.0f ms, expanded=%d (%.0f/s), generated=%d (%.0f/s), "
+            + "duplicates=%.1f%%, prunes=%s, heuristic=%.0f ms over %d calls, peakFrontier=%d]",
+            elapsedNanos / 1e6, expanded, getExpandedPerSecond(), generated, getGeneratedPerSecond(),
+            getDuplicateRate() * 100, "{" + pruned + "}", heuristicNanos / 1e6, heuristicCalls, peakFrontier);
+    }
+}
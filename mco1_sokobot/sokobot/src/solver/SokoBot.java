@@ -6,22 +6,71 @@
 
 package solver;
 
-import java.awt.Point;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import reader.MapData;
 
 /**
  * This solves the Sokoban puzzles.
  * It finds the shortest sequence of moves to push the crates using a priority
- * queue with a heuristic.
+ * queue with a heuristic. The search either expands every player step or, by
+ * default, only crate pushes with the walking in between filled in at the end.
  */
 public class SokoBot {
+    private final SolverOptions options;    // How the search is run
+    private final SearchMonitor monitor;    // Cancellation token and progress sink
+
+    /**
+     * Creates a bot with the default options.
+     */
+    public SokoBot() {
+        this(new SolverOptions());
+    }
+
+    /**
+     * Creates a bot with the given options.
+     * 
+     * @param options   Search mode and open list to use
+     */
+    public SokoBot(SolverOptions options) {
+        this(options, new SearchMonitor());
+    }
+
+    /**
+     * Creates a bot whose searches can be cancelled and report progress
+     * through the given monitor.
+     * 
+     * @param options   Search mode and open list to use
+     * @param monitor   Cancellation token and progress sink
+     */
+    public SokoBot(SolverOptions options, SearchMonitor monitor) {
+        this.options = options;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Creates a task that solves the puzzle with these options once it is
+     * run, on a thread of the caller's choosing. The task completes with the
+     * move string and stops the search when it is cancelled.
+     * 
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @param listener  Called with progress snapshots on the search thread, or null
+     * @return          Task that has not started yet
+     */
+    public SolveTask task(int width, int height, char[][] mapData, char[][] itemsData,
+            Consumer<Progress> listener) {
+        SearchMonitor taskMonitor = new SearchMonitor(listener);
+
+        return new SolveTask(new SokoBot(options, taskMonitor), taskMonitor, width, height, mapData, itemsData);
+    }
+
     /**
      * Solves the Sokoban puzzle given the map and initial crate positions.
+     * With a solution cache in the options, a level solved before is answered
+     * from it and a new solution is stored to it.
      * 
      * @param width     Width of the map
      * @param height    Height of the map
@@ -30,34 +79,283 @@ public class SokoBot {
      * @return          A string representing the sequence of moves to solve the puzzle
      */
     public String solveSokobanPuzzle(int width, int height, char[][] mapData, char[][] itemsData) {
-        State initialState = State.fromLevel(mapData, itemsData, width, height);
+        SolutionCache cache = options.getCache();
+
+        if (cache != null) {
+            String cached = cache.get(width, height, mapData, itemsData);
+            if (cached != null)
+                return cached;
+        }
+
+        // Precompute the push-distance tables and dead squares of this level only
+        State initialState = State.fromLevel(new Level(mapData, width, height), itemsData);
+        String path = solve(initialState, initialState.getLevel().getDeadSquares());
+
+        if (cache != null && !path.isEmpty())
+            cache.put(width, height, mapData, itemsData, path);
+
+        return path;
+    }
+
+    /**
+     * Runs the search chosen in the options on a level that was already
+     * loaded, so several searches can share the precomputed tables.
+     * 
+     * @param initialState    State the level starts in
+     * @param deadlockSpace   Dead square flags indexed by cell
+     * @return                A string representing the sequence of moves, empty if none
+     */
+    String solve(State initialState, boolean[] deadlockSpace) {
+        SearchMetrics metrics = options.getEngine() == SearchEngine.ASTAR
+            ? SearchMetrics.create(options.isMetrics()) : null;    // Only the A* engine counts
+
+        return solve(initialState, deadlockSpace, metrics);
+    }
+
+    /**
+     * Solves the puzzle like {@link #solveSokobanPuzzle} and also returns the
+     * counters of the search, whether or not metrics are on in the options.
+     * 
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @return          Move string with the search counters, which only the A* engine collects
+     */
+    public Solution solveWithMetrics(int width, int height, char[][] mapData, char[][] itemsData) {
+        State initialState = State.fromLevel(new Level(mapData, width, height), itemsData);
+        SearchMetrics metrics = options.getEngine() == SearchEngine.ASTAR ? new SearchMetrics() : null;
+        String moves = solve(initialState, initialState.getLevel().getDeadSquares(), metrics);
+
+        return new Solution(moves, metrics != null ? metrics.snapshot() : null);
+    }
+
+    /**
+     * Runs the search chosen in the options, counting into the given metrics,
+     * which are only made for the A* engine.
+     * 
+     * @param initialState    State the level starts in
+     * @param deadlockSpace   Dead square flags indexed by cell
+     * @param metrics         Counters of the A* search, or null to count nothing
+     * @return                A string representing the sequence of moves, empty if none
+     */
+    private String solve(State initialState, boolean[] deadlockSpace, SearchMetrics metrics) {
+        if (options.getEngine() == SearchEngine.PORTFOLIO)
+            return new Portfolio(Portfolio.strategies(options), monitor).solve(initialState, deadlockSpace);
+
+        if (options.getEngine() == SearchEngine.PARALLEL)
+            return new ParallelSearch(initialState, deadlockSpace, options, monitor).solve();
+
+        ProgressCounter progress = new ProgressCounter(monitor);
+
+        try {
+            return search(initialState, deadlockSpace, metrics, progress);
+        } finally {
+            progress.flush();                       // Whatever is left since the last report
+        }
+    }
+
+    /**
+     * Runs the search chosen in the options when it runs on the calling
+     * thread, so one counter serves the whole search.
+     * 
+     * @param initialState    State the level starts in
+     * @param deadlockSpace   Dead square flags indexed by cell
+     * @param metrics         Counters of the search, or null to count nothing
+     * @param progress        Cancellation check and counter of the expansions
+     * @return                A string representing the sequence of moves, empty if none
+     */
+    private String search(State initialState, boolean[] deadlockSpace, SearchMetrics metrics,
+            ProgressCounter progress) {
+        char[][] mapData = initialState.getMap();
+        int width = initialState.getWidth();
+
+        if (options.getEngine() == SearchEngine.ANYTIME)
+            return new AnytimeSearch(initialState, deadlockSpace, options,
+                System.nanoTime() + options.getTimeLimit() * 1_000_000L, progress).solve();
+
+        if (options.getEngine() == SearchEngine.IDASTAR)
+            return new IdaSearch(initialState, deadlockSpace, options, progress).solve();
+
+        if (options.getEngine() == SearchEngine.BIDIRECTIONAL)
+            return new BidirectionalSearch(initialState, deadlockSpace, options, progress).solve();
+
+        if (options.getEngine() == SearchEngine.EXTERNAL)
+            return new SpillSearch(initialState, deadlockSpace, options, progress).solve();
 
-        // Precompute deadlock spaces
-        Set<Point> deadlockSpace = findDeadlockSpace(mapData, itemsData, width, height);
+        String path;
 
-        PriorityQueue<Node> queue = makeQueue();    // Priority queue for A* search
-        Set<State> visited = new HashSet<>();       // Set of visited states
+        if (options.getMode() == SearchMode.PUSHES)
+            path = solveByPushes(initialState,
+                new PushExpander(initialState, deadlockSpace, options.isLearnPatterns(), metrics), metrics,
+                progress);
+        else {
+            Reachability reach = new Reachability(mapData, width, mapData.length);
+            DeadlockDetector deadlocks = new DeadlockDetector(deadlockSpace, reach, options.isLearnPatterns()
+                ? new DeadlockPatterns(mapData, width, mapData.length, deadlockSpace) : null);
 
-        queue.add(new Node(initialState, ""));  // Add the initial state
+            path = solveByMoves(initialState, deadlocks, metrics, progress);
+        }
+
+        if (metrics != null)
+            metrics.finish(options.getMode(), !path.isEmpty());
+
+        return path;
+    }
+
+    /**
+     * Runs A* where every player step is a node.
+     * 
+     * @param initialState    State the level starts in
+     * @param deadlocks       Deadlock detector for the level
+     * @param metrics         Counters of the search, or null to count nothing
+     * @param progress        Cancellation check and counter of the expansions
+     * @return                A string representing the sequence of moves, empty if none
+     */
+    private String solveByMoves(State initialState, DeadlockDetector deadlocks, SearchMetrics metrics,
+            ProgressCounter progress) {
+        Frontier queue = makeQueue();               // Open list for A* search
+        VisitedSet visited = makeVisited();         // Set of visited states
+        Assignment assignment = new Assignment(initialState.getLevel().getDistances());
+        int width = initialState.getWidth();
+        int heuristic, from, to;
+        boolean solved;
+
+        heuristic = assignment.solve(initialState.getCrates());
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        queue.add(new Node(initialState, heuristic, options.getWeight()));  // Add the initial state
         visited.add(initialState);                   // Mark initial state as visited
 
         while (!queue.isEmpty()) {
+            if (progress.isCancelled())
+                return "";                      // Cancelled, e.g. by a faster search
+
             Node current = queue.poll();        // Get node with the lowest cost
 
+            if (metrics != null)
+                metrics.expanded(current.depth, current.heuristic, queue.size());
+
+            progress.expanded(current.heuristic, queue.size());
+
             if (current.state.isGoalState())    // Check if all crates are on goals
-                return current.path; 
+                return current.getPath();    // Build the move string once
+
+            solved = false;                     // Matching of this node is solved on first push
 
             // Try all possible moves
             for (Move move : Move.values()) {
-                move.tryApply(current.state).ifPresent(nextState -> {
-                    if (!visited.contains(nextState) 
-                        && !isInDeadlock(deadlockSpace, nextState)) {
+                State nextState = move.tryApply(current.state).orElse(null);
+
+                if (nextState == null)
+                    continue;
+
+                boolean duplicate = visited.contains(nextState);
+                if (metrics != null)
+                    metrics.visitedLookup(duplicate);
+                if (duplicate)
+                    continue;
 
-                        // Mark as visited and add to queue
-                        visited.add(nextState);
-                        queue.add(new Node(nextState, current.path + move.toCommand()));
+                // Walking keeps the crates, and with them the heuristic
+                if (nextState.getCrates() == current.state.getCrates())
+                    heuristic = current.heuristic;
+                else {
+                    from = nextState.getPlayer();
+                    to = from + move.getRowDelta() * width + move.getColumnDelta();
+
+                    if (isInDeadlock(deadlocks, nextState, to)) {
+                        if (metrics != null)
+                            metrics.deadlock(deadlocks, nextState, to);
+                        continue;
+                    }
+
+                    long started = metrics != null ? System.nanoTime() : 0;
+
+                    if (!solved) {
+                        assignment.solve(current.state.getCrates());
+                        solved = true;
                     }
-                });
+
+                    heuristic = assignment.update(from, to);
+
+                    if (metrics != null)
+                        metrics.heuristic(System.nanoTime() - started);
+                }
+
+                if (heuristic >= Assignment.INFEASIBLE) {   // No matching left, so a deadlock
+                    if (metrics != null)
+                        metrics.pruned(PruneType.MATCHING, 1);
+                    continue;
+                }
+
+                if (visited.isFull())           // Out of room for new states, give up
+                    return "";
+
+                // Mark as visited and add to queue
+                visited.add(nextState);
+                queue.add(new Node(nextState, current, move, heuristic, options.getWeight()));
+
+                if (metrics != null)
+                    metrics.generated();
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * Runs A* where every crate push is a node. The player position of a state
+     * is normalized to the smallest cell of the area it can walk in, so states
+     * that only differ by where the player stands inside that area collapse.
+     * 
+     * @param initialState    State the level starts in
+     * @param expander        Push generator for the level, counting into the same metrics
+     * @param metrics         Counters of the search, or null to count nothing
+     * @param progress        Cancellation check and counter of the expansions
+     * @return                A string representing the sequence of moves, empty if none
+     */
+    private String solveByPushes(State initialState, PushExpander expander, SearchMetrics metrics,
+            ProgressCounter progress) {
+        Frontier queue = makeQueue();               // Open list for A* search
+        VisitedSet visited = makeVisited();         // Set of visited states
+        int childCount, heuristic;
+
+        State root = expander.normalize(initialState);
+        heuristic = expander.estimate(root);
+        if (heuristic >= Assignment.INFEASIBLE)
+            return "";
+
+        queue.add(new Node(root, heuristic, options.getWeight()));
+        visited.add(root);
+
+        while (!queue.isEmpty()) {
+            if (progress.isCancelled())
+                return "";                      // Cancelled, e.g. by a faster search
+
+            Node current = queue.poll();        // Get node with the lowest cost
+
+            if (metrics != null)
+                metrics.expanded(current.depth, current.heuristic, queue.size());
+
+            progress.expanded(current.heuristic, queue.size());
+
+            if (current.state.isGoalState())    // Check if all crates are on goals
+                return expander.rebuildPath(current, initialState);
+
+            childCount = expander.expand(current.state, visited);
+
+            for (int i = 0; i < childCount; i++) {
+                if (visited.isFull())           // Out of room for new states, give up
+                    return "";
+
+                // Mark as visited and add to queue
+                visited.add(expander.child(i));
+                queue.add(new Node(expander.child(i), current, expander.move(i), expander.heuristic(i),
+                    options.getWeight()));
+
+                if (metrics != null)
+                    metrics.generated();
             }
         }
 
@@ -65,78 +363,64 @@ public class SokoBot {
     }
 
     /**
-     * Creates a priority queue for Node objects sorted by their cost.
+     * Creates the open list chosen in the options, sorted by node cost.
+     * 
+     * @return  An empty open list
+     */
+    public Frontier makeQueue() {
+        return options.getFrontier().create();
+    }
+
+    /**
+     * Creates the closed set chosen in the options.
      * 
-     * @return  A priority queue
+     * @return  An empty visited set
      */
-    public static PriorityQueue<Node> makeQueue() {
-        return new PriorityQueue<>(1,
-          Comparator.comparingDouble(n -> n.getCost()));
+    public VisitedSet makeVisited() {
+        return options.getVisited().create(options.getVisitedCapacity());
     }
 
     /**
-     * Checks whether a state is in a deadlock.
+     * Checks whether a state is in a deadlock. Crates that did not move were
+     * already checked when their own push was generated, so only the crate
+     * that was just pushed and the crates around it need to be looked at.
      * 
-     * @param deadlockSpace   Set of points representing corner deadlocks
+     * @param deadlocks       Deadlock detector for the level
      * @param nextState       The state to check
+     * @param movedCrate      Cell index the crate was pushed to
      * @return                true if state is deadlocked, false otherwise
      */
-    public static boolean isInDeadlock(Set<Point> deadlockSpace, State nextState) {
-        Set<Point> goals = nextState.getGoals();
-        boolean[][] crateMap = new boolean[nextState.getMap().length][nextState.getMap()[0].length];
-        boolean right, down, diag;
-
-        // Build crate map for quick lookup of crates
-        for (Point crate : nextState.getCrates()) 
-          crateMap[crate.y][crate.x] = true;
-
-        for (Point crate : nextState.getCrates()) {
-            if (deadlockSpace.contains(crate))    // Corner deadlocks
-                return true;
-
-            if (goals.contains(crate))            // Skip crates on goals
-                continue;  
-        }
-
-        return false;
+    public static boolean isInDeadlock(DeadlockDetector deadlocks, State nextState, int movedCrate) {
+        return deadlocks.isDeadSquare(movedCrate)               // Dead square deadlocks
+            || deadlocks.isFrozen(nextState, movedCrate)        // Freeze deadlocks
+            || deadlocks.matchesPattern(nextState, movedCrate); // Learned pattern deadlocks
     }
 
     /**
-     * Finds deadlock positions on the map.
+     * Finds the dead squares of the map: every cell from which a lone crate
+     * cannot be pushed to any goal. These are the cells no goal's reverse pull
+     * search reached, which covers corners as well as walls a crate can never
+     * leave.
      * 
-     * @param mapData     Map layout
-     * @param itemsData   Positions of player and crates
-     * @param width       Width of map
-     * @param height      Height of map
-     * @return            Set of points representing deadlock positions
+     * @param distances       Push-distance tables per goal index, indexed by cell
+     * @param width           Width of map
+     * @param height          Height of map
+     * @return                Deadlock flags indexed by cell (row * width + column)
      */
-    public Set<Point> findDeadlockSpace(char[][] mapData, char[][] itemsData, int width, int height) {
-        int i, j;
-        char tile;
-        boolean up, down, left, right;
-
-        Set<Point> deadlockSpaces = new HashSet<>();
-
-        for (i = 0; i < height; i++) {
-            for (j = 0; j < width; j++) {
-                tile = mapData[i][j];
-
-                // Skips goals
-                if (tile == '#' || tile == '.')
-                    continue; 
-
-                // Checks surrounding walls
-                up    = i > 0 && mapData[i - 1][j] == '#';
-                down  = i < height - 1 && mapData[i + 1][j] == '#';
-                left  = j > 0 && mapData[i][j - 1] == '#';
-                right = j < width - 1 && mapData[i][j + 1] == '#';
-
-                // Corner deadlocks
-                if ((up && left) || (up && right) || (down && left) || (down && right)) {
-                    deadlockSpaces.add(new Point(j, i));
+    public static boolean[] findDeadlockSpace(int[][] distances, int width, int height) {
+        boolean[] deadlockSpaces = new boolean[width * height];
+
+        for (int cell = 0; cell < deadlockSpaces.length; cell++) {
+            deadlockSpaces[cell] = true;
+
+            for (int[] table : distances) {
+                if (table[cell] != Integer.MAX_VALUE) {
+                    deadlockSpaces[cell] = false;
+                    break;
                 }
             }
         }
+
         return deadlockSpaces;
     }
 }
\ No newline at end of file
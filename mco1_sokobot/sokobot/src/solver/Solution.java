@@ -0,0 +1,40 @@
+package solver;
+
+/**
+ * Move string of a solve together with the counters of the search that
+ * found it.
+ */
+public final class Solution {
+    private final String moves;         // Sequence of moves, empty if none was found
+    private final SearchStats stats;    // Counters of the search, null if the engine does not count
+
+    /**
+     * Creates a solution.
+     *
+     * @param moves Sequence of moves, empty if none was found
+     * @param stats Counters of the search, or null
+     */
+    public Solution(String moves, SearchStats stats) {
+        this.moves = moves;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the sequence of moves.
+     *
+     * @return Move string, empty if none was found
+     */
+    public String getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the counters of the search. Only the single-threaded A* loops
+     * count; the other engines return null here.
+     *
+     * @return Search counters, or null
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+}
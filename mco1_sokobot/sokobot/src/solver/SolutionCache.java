@@ -0,0 +1,429 @@
+package solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of solutions keyed by a fingerprint of the level, in front of
+ * {@link SokoBot#solveSokobanPuzzle}. The fingerprint hashes the grid with the
+ * empty border trimmed, so the same level drawn with more or less padding
+ * shares an entry; solutions are relative moves, so they carry over.
+ *
+ * There are two tiers. Recently used solutions are kept in an LRU map, and
+ * every solution is appended to a file, one line per entry, that is scanned
+ * into an index of file offsets when the cache is opened. Lines cut short by
+ * a crash or otherwise malformed are skipped, and a later line for the same
+ * level wins. Every hit is replayed on the grids before it is returned, so an
+ * entry that does not solve the level, stale or corrupt, is never handed out;
+ * it is dropped and the level is solved again.
+ *
+ * All methods are synchronized, so one cache can serve several solvers.
+ */
+public class SolutionCache implements Closeable {
+    private static final String HEADER = "sokobot-solutions 1";    // First line of the store
+    private static final int KEY_LENGTH = 64;                       // Hex digits of a SHA-256 fingerprint
+
+    private final Map<String, String> recent;       // LRU tier, fingerprint to moves
+    private final Map<String, long[]> index;        // Disk tier, fingerprint to offset and length of the moves
+    private final FileChannel store;                // Append-only store, null for a memory-only cache
+
+    /**
+     * Creates a cache that only keeps solutions in memory.
+     *
+     * @param capacity  Solutions kept in the LRU tier
+     */
+    public SolutionCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Opens a cache backed by a store file, creating the file if needed and
+     * indexing the entries it already holds.
+     *
+     * @param capacity  Solutions kept in the LRU tier
+     * @param file      Store file, or null for a memory-only cache
+     */
+    public SolutionCache(int capacity, Path file) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.index = new HashMap<>();
+
+        if (file == null) {
+            this.store = null;
+            return;
+        }
+
+        try {
+            this.store = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open solution store " + file, e);
+        }
+    }
+
+    /**
+     * Looks up the solution of a level and replays it on the grids.
+     *
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @return          Move string that solves the level, or null if none is cached
+     */
+    public synchronized String get(int width, int height, char[][] mapData, char[][] itemsData) {
+        String key = fingerprint(width, height, mapData, itemsData);
+        String moves = recent.get(key);
+
+        if (moves == null)
+            moves = read(key);
+
+        if (moves == null)
+            return null;
+
+        if (!replays(width, height, mapData, itemsData, moves)) {
+            recent.remove(key);         // Stale or corrupt, solve again
+            index.remove(key);
+            return null;
+        }
+
+        recent.put(key, moves);
+        return moves;
+    }
+
+    /**
+     * Stores the solution of a level in both tiers, if it replays.
+     *
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @param moves     Move string found for the level
+     */
+    public synchronized void put(int width, int height, char[][] mapData, char[][] itemsData, String moves) {
+        if (moves.isEmpty() || !replays(width, height, mapData, itemsData, moves))
+            return;
+
+        String key = fingerprint(width, height, mapData, itemsData);
+        recent.put(key, moves);
+
+        if (store != null)
+            append(key, moves);
+    }
+
+    /**
+     * Returns the number of levels the store holds a solution for.
+     *
+     * @return Entry count, 0 for a memory-only cache
+     */
+    public synchronized int storedCount() {
+        return index.size();
+    }
+
+    /**
+     * Closes the store file.
+     */
+    @Override
+    public synchronized void close() {
+        if (store == null)
+            return;
+
+        try {
+            store.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close solution store", e);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a level: a SHA-256 hash of the grid cut to
+     * the smallest rectangle holding every wall, goal, crate and the player,
+     * with each cell written in the level file notation.
+     *
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @return          64 hex digits
+     */
+    public static String fingerprint(int width, int height, char[][] mapData, char[][] itemsData) {
+        int top = height, bottom = -1, left = width, right = -1;
+
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (mapData[row][column] != ' ' || itemsData[row][column] != ' ') {
+                    top = Math.min(top, row);
+                    bottom = Math.max(bottom, row);
+                    left = Math.min(left, column);
+                    right = Math.max(right, column);
+                }
+            }
+        }
+
+        StringBuilder grid = new StringBuilder();
+        grid.append(bottom - top + 1).append('x').append(right - left + 1).append('\n');
+
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++)
+                grid.append(tile(mapData[row][column], itemsData[row][column]));
+            grid.append('\n');
+        }
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(grid.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(KEY_LENGTH);
+
+            for (byte b : hash)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Checks that a move string solves a level by playing it on a copy of the
+     * grids: every move must be legal and every crate must end on a goal.
+     *
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     * @param moves     Move string to play
+     * @return          True if it solves the level
+     */
+    public static boolean replays(int width, int height, char[][] mapData, char[][] itemsData, String moves) {
+        boolean[] crate = new boolean[width * height];
+        int player = -1;
+
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (itemsData[row][column] == '$')
+                    crate[row * width + column] = true;
+                else if (itemsData[row][column] == '@')
+                    player = row * width + column;
+            }
+        }
+
+        if (player < 0)
+            return false;
+
+        for (int i = 0; i < moves.length(); i++) {
+            int rowDelta = 0, columnDelta = 0;
+
+            switch (moves.charAt(i)) {
+                case 'u' -> rowDelta = -1;
+                case 'd' -> rowDelta = 1;
+                case 'l' -> columnDelta = -1;
+                case 'r' -> columnDelta = 1;
+                default -> { return false; }
+            }
+
+            int row = player / width + rowDelta;
+            int column = player % width + columnDelta;
+            if (!isFloor(width, height, mapData, row, column))
+                return false;
+
+            int next = row * width + column;
+            if (crate[next]) {
+                if (!isFloor(width, height, mapData, row + rowDelta, column + columnDelta))
+                    return false;
+
+                int beyond = (row + rowDelta) * width + column + columnDelta;
+                if (crate[beyond])
+                    return false;
+
+                crate[next] = false;
+                crate[beyond] = true;
+            }
+
+            player = next;
+        }
+
+        for (int cell = 0; cell < crate.length; cell++) {
+            if (crate[cell] && mapData[cell / width][cell % width] != '.')
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if a position is inside the map and not a wall.
+     *
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param row       Row of the position
+     * @param column    Column of the position
+     * @return          True if the player or a crate can stand there
+     */
+    private static boolean isFloor(int width, int height, char[][] mapData, int row, int column) {
+        return row >= 0 && row < height && column >= 0 && column < width && mapData[row][column] != '#';
+    }
+
+    /**
+     * Writes one cell in the level file notation.
+     *
+     * @param map   Map character of the cell
+     * @param item  Item character of the cell
+     * @return      '#', '.', '$', '*', '@', '+' or ' '
+     */
+    private static char tile(char map, char item) {
+        if (map == '#')
+            return '#';
+
+        boolean goal = map == '.';
+
+        if (item == '$')
+            return goal ? '*' : '$';
+        if (item == '@')
+            return goal ? '+' : '@';
+
+        return goal ? '.' : ' ';
+    }
+
+    /**
+     * Scans the store into the index. An empty store gets the header; a store
+     * whose last line was cut short gets a line break so the next entry
+     * starts on its own line. Anything else is left as it is.
+     *
+     * @throws IOException  If the store cannot be read or does not start with the header
+     */
+    private void load() throws IOException {
+        long size = store.size();
+
+        if (size == 0) {
+            write(HEADER + "\n", 0);
+            return;
+        }
+
+        byte[] content = new byte[(int) size];
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        while (buffer.hasRemaining() && store.read(buffer, buffer.position()) >= 0) {
+            // Read until full
+        }
+
+        byte[] header = (HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+        if (!Arrays.equals(content, 0, Math.min(content.length, header.length), header, 0, header.length))
+            throw new IOException("Not a solution store: it does not start with \"" + HEADER + "\"");
+
+        int start = header.length;
+
+        for (int i = start; i < content.length; i++) {
+            if (content[i] != '\n')
+                continue;
+
+            indexLine(content, start, i);
+            start = i + 1;
+        }
+
+        if (content[content.length - 1] != '\n')
+            write("\n", size);          // Cut short, the partial entry stays unindexed
+    }
+
+    /**
+     * Adds one store line to the index if it is well formed: a fingerprint, a
+     * space and a non-empty move string of u, d, l and r.
+     *
+     * @param content   Bytes of the store
+     * @param start     Offset of the line
+     * @param end       Offset of the line break
+     */
+    private void indexLine(byte[] content, int start, int end) {
+        int movesStart = start + KEY_LENGTH + 1;
+
+        if (end <= movesStart || content[start + KEY_LENGTH] != ' ')
+            return;
+
+        for (int i = start; i < start + KEY_LENGTH; i++) {
+            if (Character.digit(content[i], 16) < 0)
+                return;
+        }
+
+        for (int i = movesStart; i < end; i++) {
+            if (content[i] != 'u' && content[i] != 'd' && content[i] != 'l' && content[i] != 'r')
+                return;
+        }
+
+        index.put(new String(content, start, KEY_LENGTH, StandardCharsets.US_ASCII),
+            new long[] {movesStart, end - movesStart});
+    }
+
+    /**
+     * Reads the moves of a fingerprint from the store.
+     *
+     * @param key   Fingerprint of the level
+     * @return      Move string, or null if the store has no entry
+     */
+    private String read(String key) {
+        long[] entry = index.get(key);
+
+        if (entry == null)
+            return null;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+
+            while (buffer.hasRemaining()) {
+                if (store.read(buffer, entry[0] + buffer.position()) < 0)
+                    return null;        // Store was cut short since it was indexed
+            }
+
+            return new String(buffer.array(), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read solution store", e);
+        }
+    }
+
+    /**
+     * Appends an entry to the store and indexes it.
+     *
+     * @param key   Fingerprint of the level
+     * @param moves Move string of the level
+     */
+    private void append(String key, String moves) {
+        try {
+            long offset = store.size();
+
+            write(key + " " + moves + "\n", offset);
+            index.put(key, new long[] {offset + KEY_LENGTH + 1, moves.length()});
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write solution store", e);
+        }
+    }
+
+    /**
+     * Writes text to the store at an offset.
+     *
+     * @param text      ASCII text to write
+     * @param offset    Position in the file
+     * @throws IOException  If the store cannot be written
+     */
+    private void write(String text, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+
+        while (buffer.hasRemaining())
+            offset += store.write(buffer, offset);
+    }
+}
@@ -0,0 +1,99 @@
+package solver;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Solve of one level that runs on whatever thread calls {@link #run()} and
+ * completes as a future with the move string, empty if none was found.
+ * Cancelling it cancels its {@link SearchMonitor}, so the searches stop at
+ * their next expansion and free their memory, and also interrupts the
+ * running thread for the searches that only watch for interrupts.
+ */
+public class SolveTask extends CompletableFuture<String> implements Runnable {
+    private final SokoBot bot;          // Bot sharing this task's monitor
+    private final SearchMonitor monitor;// Cancellation token and progress sink
+    private final int width;            // Width of the map
+    private final int height;           // Height of the map
+    private final char[][] mapData;     // 2D char array representing the map
+    private final char[][] itemsData;   // 2D char array representing the player and crates
+    private final Object lock;          // Guards the runner and the interrupt of a cancel
+    private Thread runner;              // Thread running the solve, null before and after
+    private boolean interrupted;        // Whether a cancel interrupted the runner
+
+    /**
+     * Creates a task that has not started yet.
+     *
+     * @param bot       Bot created with the monitor
+     * @param monitor   Cancellation token and progress sink
+     * @param width     Width of the map
+     * @param height    Height of the map
+     * @param mapData   2D char array representing the map
+     * @param itemsData 2D char array representing the player and crates
+     */
+    SolveTask(SokoBot bot, SearchMonitor monitor, int width, int height, char[][] mapData, char[][] itemsData) {
+        this.bot = bot;
+        this.monitor = monitor;
+        this.width = width;
+        this.height = height;
+        this.mapData = mapData;
+        this.itemsData = itemsData;
+        this.lock = new Object();
+    }
+
+    /**
+     * Runs the solve on the calling thread and completes the task with its
+     * result, or with the exception it threw.
+     */
+    @Override
+    public void run() {
+        synchronized (lock) {
+            if (isDone())
+                return;                 // Cancelled before it started
+
+            runner = Thread.currentThread();
+        }
+
+        try {
+            complete(bot.solveSokobanPuzzle(width, height, mapData, itemsData));
+        } catch (RuntimeException | Error e) {
+            completeExceptionally(e);
+        } finally {
+            // A cancel either interrupted before this point or sees no runner
+            // and does not; clear its interrupt, the thread may be reused
+            synchronized (lock) {
+                runner = null;
+                if (interrupted)
+                    Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Cancels the task and stops the searches.
+     *
+     * @param mayInterruptIfRunning True to also interrupt the running thread
+     * @return                      True if the task is now cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        monitor.cancel();
+
+        synchronized (lock) {
+            if (mayInterruptIfRunning && runner != null) {
+                runner.interrupt();
+                interrupted = true;
+            }
+        }
+
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * Returns the monitor of this task.
+     *
+     * @return  Cancellation token and progress sink
+     */
+    public SearchMonitor getMonitor() {
+        return monitor;
+    }
+}
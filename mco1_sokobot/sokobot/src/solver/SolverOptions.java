@@ -0,0 +1,389 @@
+package solver;
+
+import java.nio.file.Path;
+
+/**
+ * Settings that choose how the Sokobot searches. Setters return the same
+ * object so settings can be chained.
+ */
+public class SolverOptions {
+    public static final int GREEDY = 1000;  // Weight at which the depth only breaks ties
+
+    private SearchMode mode;            // Granularity of the search
+    private FrontierType frontier;      // Open list implementation
+    private VisitedType visited;        // Closed set implementation
+    private int visitedCapacity;        // States a bounded closed set can hold
+    private SearchEngine engine;        // Search algorithm
+    private int threads;                // Worker threads of the parallel search
+    private int weight;                 // Factor the heuristic is multiplied by in node costs
+    private boolean learnPatterns;      // Whether deadlock patterns are learned during the search
+    private int tableSize;              // Entries of the IDA* transposition table
+    private long timeLimit;             // Milliseconds the anytime search may run
+    private Path spillDirectory;        // Where the external search writes its files, null for the temp directory
+    private int memoryLimit;            // Open list entries the external search keeps in memory
+    private boolean metrics;            // Whether the A* search counts its work
+    private SolutionCache cache;        // Solutions of levels solved before, null for none
+
+    /**
+     * Creates the default settings: push-level search over a bucketed open
+     * list, with a closed set of state keys that holds up to 2^24 states, on
+     * a single thread, unweighted and without learned deadlock patterns. The
+     * parallel search uses one worker per processor, IDA* a transposition
+     * table of 2^20 entries (16 MB), and the anytime search stops after 12
+     * seconds. The external search keeps 2^20 open list entries in memory and
+     * spills the rest to the system temp directory. Metrics are off and there
+     * is no solution cache.
+     */
+    public SolverOptions() {
+        this.mode = SearchMode.PUSHES;
+        this.frontier = FrontierType.BUCKETS;
+        this.visited = VisitedType.KEYS;
+        this.visitedCapacity = 1 << 24;
+        this.engine = SearchEngine.ASTAR;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.weight = 1;
+        this.learnPatterns = false;
+        this.tableSize = 1 << 20;
+        this.timeLimit = 12_000;
+        this.spillDirectory = null;
+        this.memoryLimit = 1 << 20;
+        this.metrics = false;
+        this.cache = null;
+    }
+
+    /**
+     * Returns a copy of these options that can be changed on its own.
+     *
+     * @return  New options with the same settings
+     */
+    public SolverOptions copy() {
+        SolverOptions copy = new SolverOptions();
+
+        copy.mode = mode;
+        copy.frontier = frontier;
+        copy.visited = visited;
+        copy.visitedCapacity = visitedCapacity;
+        copy.engine = engine;
+        copy.threads = threads;
+        copy.weight = weight;
+        copy.learnPatterns = learnPatterns;
+        copy.tableSize = tableSize;
+        copy.timeLimit = timeLimit;
+        copy.spillDirectory = spillDirectory;
+        copy.memoryLimit = memoryLimit;
+        copy.metrics = metrics;
+        copy.cache = cache;
+        return copy;
+    }
+
+    /**
+     * Returns the granularity of the search.
+     *
+     * @return Search mode
+     */
+    public SearchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the granularity of the search.
+     *
+     * @param mode  Whether nodes are single moves or crate pushes
+     * @return      These options
+     */
+    public SolverOptions setMode(SearchMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Returns the open list implementation.
+     *
+     * @return Frontier type
+     */
+    public FrontierType getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Sets the open list implementation.
+     *
+     * @param frontier  Frontier type
+     * @return          These options
+     */
+    public SolverOptions setFrontier(FrontierType frontier) {
+        this.frontier = frontier;
+        return this;
+    }
+
+    /**
+     * Returns the closed set implementation.
+     *
+     * @return Visited set type
+     */
+    public VisitedType getVisited() {
+        return visited;
+    }
+
+    /**
+     * Sets the closed set implementation.
+     *
+     * @param visited   Visited set type
+     * @return          These options
+     */
+    public SolverOptions setVisited(VisitedType visited) {
+        this.visited = visited;
+        return this;
+    }
+
+    /**
+     * Returns the number of states a bounded closed set can hold.
+     *
+     * @return Capacity in states
+     */
+    public int getVisitedCapacity() {
+        return visitedCapacity;
+    }
+
+    /**
+     * Sets the number of states a bounded closed set can hold. When it is
+     * reached the search stops and returns no solution.
+     *
+     * @param visitedCapacity   Capacity in states
+     * @return                  These options
+     */
+    public SolverOptions setVisitedCapacity(int visitedCapacity) {
+        this.visitedCapacity = visitedCapacity;
+        return this;
+    }
+
+    /**
+     * Returns the search algorithm.
+     *
+     * @return Search engine
+     */
+    public SearchEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the search algorithm. The parallel engine always searches pushes,
+     * whatever the mode is set to.
+     *
+     * @param engine    Search engine
+     * @return          These options
+     */
+    public SolverOptions setEngine(SearchEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Returns the number of worker threads of the parallel search.
+     *
+     * @return Thread count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of worker threads of the parallel search. The closed
+     * set capacity is split evenly between them.
+     *
+     * @param threads   Thread count, at least 1
+     * @return          These options
+     */
+    public SolverOptions setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Returns the factor the heuristic is multiplied by in node costs.
+     *
+     * @return Heuristic weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the factor the heuristic is multiplied by in node costs. 1 is
+     * plain A*; larger weights give weighted A*, and a very large one such as
+     * {@link #GREEDY} gives greedy best-first search.
+     *
+     * @param weight    Heuristic weight, at least 1
+     * @return          These options
+     */
+    public SolverOptions setWeight(int weight) {
+        if (weight < 1)
+            throw new IllegalArgumentException("Weight must be at least 1: " + weight);
+
+        this.weight = weight;
+        return this;
+    }
+
+    /**
+     * Returns whether deadlock patterns are learned during the search.
+     *
+     * @return True if learning is on
+     */
+    public boolean isLearnPatterns() {
+        return learnPatterns;
+    }
+
+    /**
+     * Sets whether deadlock patterns are learned during the search. Learning
+     * can prune more states, but its sub-searches cost more than they save on
+     * the bundled levels, so it is off by default.
+     *
+     * @param learnPatterns True to learn patterns
+     * @return              These options
+     */
+    public SolverOptions setLearnPatterns(boolean learnPatterns) {
+        this.learnPatterns = learnPatterns;
+        return this;
+    }
+
+    /**
+     * Returns the number of entries of the IDA* transposition table.
+     *
+     * @return Table size
+     */
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    /**
+     * Sets the number of entries of the IDA* transposition table. The table
+     * is allocated once at this size and never grows.
+     *
+     * @param tableSize Table size, rounded down to a power of two
+     * @return          These options
+     */
+    public SolverOptions setTableSize(int tableSize) {
+        if (tableSize < 2)
+            throw new IllegalArgumentException("Table size must be at least 2: " + tableSize);
+
+        this.tableSize = tableSize;
+        return this;
+    }
+
+    /**
+     * Returns how long the anytime search may run.
+     *
+     * @return Time limit in milliseconds
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets how long the anytime search may run, counted from when the search
+     * starts. The best solution found by then is returned.
+     *
+     * @param timeLimit Time limit in milliseconds, at least 1
+     * @return          These options
+     */
+    public SolverOptions setTimeLimit(long timeLimit) {
+        if (timeLimit < 1)
+            throw new IllegalArgumentException("Time limit must be at least 1 ms: " + timeLimit);
+
+        this.timeLimit = timeLimit;
+        return this;
+    }
+
+    /**
+     * Returns the directory the external search writes its files to.
+     *
+     * @return Spill directory, or null for the system temp directory
+     */
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory the external search writes its files to. Each
+     * search makes its own subdirectory there and deletes it when done.
+     *
+     * @param spillDirectory    Existing directory, or null for the system temp directory
+     * @return                  These options
+     */
+    public SolverOptions setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * Returns the number of open list entries the external search keeps in
+     * memory.
+     *
+     * @return Entry count
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Sets the number of open list entries the external search keeps in
+     * memory. Past it, the costliest buckets are written to disk.
+     *
+     * @param memoryLimit   Entry count, at least 4
+     * @return              These options
+     */
+    public SolverOptions setMemoryLimit(int memoryLimit) {
+        if (memoryLimit < 4)
+            throw new IllegalArgumentException("Memory limit must be at least 4 entries: " + memoryLimit);
+
+        this.memoryLimit = memoryLimit;
+        return this;
+    }
+
+    /**
+     * Returns whether the A* search counts its work.
+     *
+     * @return True if metrics are on
+     */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets whether the A* search counts its work: expansions, duplicates,
+     * prunes by type, heuristic time and the g and h values expanded, also
+     * sent as Flight Recorder events. A recording with the Sokobot events on
+     * turns counting on by itself; with both off nothing is counted.
+     *
+     * @param metrics   True to count
+     * @return          These options
+     */
+    public SolverOptions setMetrics(boolean metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Returns the cache solutions are looked up in and stored to.
+     *
+     * @return The solution cache, or null for none
+     */
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache {@link SokoBot#solveSokobanPuzzle} checks before it
+     * searches and stores its solutions to. Copies of these options share it.
+     *
+     * @param cache Solution cache, or null to always search
+     * @return      These options
+     */
+    public SolverOptions setCache(SolutionCache cache) {
+        this.cache = cache;
+        return this;
+    }
+}
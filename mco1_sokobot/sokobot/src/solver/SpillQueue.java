@@ -0,0 +1,426 @@
+package solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open list for the external search that keeps the low-cost buckets in memory
+ * and writes the cold, high-cost ones to disk. Entries of one cost go to one
+ * file as packed records, appended through a memory-mapped region one whole
+ * bucket at a time. When the lowest cost on disk is below every cost in
+ * memory, a batch of that file is mapped and read back. Once a file is read
+ * to the end it is deleted, and a later spill of the same cost starts a new
+ * file under a new name, since a mapping of the old one may still be alive.
+ *
+ * In memory, entries of one cost are kept in stacks per heuristic and the
+ * lowest heuristic is taken first, the same tie-breaking as
+ * {@link BucketFrontier}.
+ *
+ * Duplicates are not looked up when entries are spilled. They are dropped in
+ * batches when a file is read back instead: entries whose state was expanded
+ * in the meantime, and repeats within the batch. Two entries of the same state
+ * in the same bucket always have the same cost, so keeping either one is fine.
+ */
+public class SpillQueue implements Closeable {
+    private static final int BATCH = 1 << 16;       // Most entries read back from disk at a time
+    private static final int NONE = 0xFFFF;         // Packed cell standing for -1
+
+    private final Path directory;           // Directory holding one file per spilled cost
+    private final State level;              // Any state of the level, to rebuild states from records
+    private final VisitedSet closed;        // States already expanded
+    private final int memoryLimit;          // Entries kept in memory before cold buckets are spilled
+    private final int recordSize;           // Bytes per packed entry
+    private List<Bucket> buckets;           // In-memory entries per cost
+    private FileChannel[] files;            // Spill file per cost, null if none
+    private Path[] paths;                   // Name of the spill file per cost, null if none
+    private int generation;                 // Spill files created so far, numbering their names
+    private long[] written;                 // Bytes written per spill file
+    private long[] read;                    // Bytes already read back per spill file
+    private int inMemory;                   // Number of entries in memory
+    private long onDisk;                    // Number of entries on disk
+    private int lowestCost;                 // Lowest cost that may hold an entry in memory
+
+    /**
+     * Entry of the open list. Instead of a parent pointer, which would keep
+     * every expanded node alive, it holds the id the parent got in the
+     * expansion log and the push that led here.
+     */
+    public static final class Entry {
+        public final State state;       // State of the board
+        public final int depth;         // Number of pushes made to reach the state
+        public final int heuristic;     // Estimated pushes left
+        public final int parentId;      // Expansion id of the parent, -1 for the root
+        public final int from;          // Cell the crate was pushed from, -1 for the root
+        public final byte move;         // Ordinal of the push direction, -1 for the root
+
+        /**
+         * Creates an entry.
+         *
+         * @param state     State of the board
+         * @param depth     Number of pushes made to reach the state
+         * @param heuristic Estimated pushes left
+         * @param parentId  Expansion id of the parent, -1 for the root
+         * @param from      Cell the crate was pushed from, -1 for the root
+         * @param move      Ordinal of the push direction, -1 for the root
+         */
+        public Entry(State state, int depth, int heuristic, int parentId, int from, byte move) {
+            this.state = state;
+            this.depth = depth;
+            this.heuristic = heuristic;
+            this.parentId = parentId;
+            this.from = from;
+            this.move = move;
+        }
+    }
+
+    /**
+     * In-memory entries of one cost, in stacks per heuristic.
+     */
+    private static final class Bucket {
+        private final List<List<Entry>> stacks = new ArrayList<>();   // Entries per heuristic
+        private int size;                   // Number of entries
+        private int lowestHeuristic;        // Lowest heuristic that may hold an entry
+
+        /**
+         * Pushes an entry on the stack of its heuristic.
+         *
+         * @param entry Entry to add
+         */
+        void add(Entry entry) {
+            while (stacks.size() <= entry.heuristic)
+                stacks.add(null);
+            if (stacks.get(entry.heuristic) == null)
+                stacks.set(entry.heuristic, new ArrayList<>());
+
+            stacks.get(entry.heuristic).add(entry);
+
+            if (size++ == 0 || entry.heuristic < lowestHeuristic)
+                lowestHeuristic = entry.heuristic;
+        }
+
+        /**
+         * Pops the latest entry with the lowest heuristic.
+         *
+         * @return  Entry, the bucket must not be empty
+         */
+        Entry poll() {
+            while (stacks.get(lowestHeuristic) == null || stacks.get(lowestHeuristic).isEmpty())
+                lowestHeuristic++;
+
+            List<Entry> stack = stacks.get(lowestHeuristic);
+            size--;
+            return stack.remove(stack.size() - 1);
+        }
+
+        /**
+         * Returns the number of entries.
+         *
+         * @return  Entry count
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Checks if the bucket holds no entries.
+         *
+         * @return  True if empty
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * Creates an empty open list spilling into the given directory.
+     *
+     * @param directory     Existing directory for the spill files
+     * @param level         Any state of the level
+     * @param closed        States already expanded, checked when entries are read back
+     * @param memoryLimit   Entries kept in memory before cold buckets are spilled
+     */
+    public SpillQueue(Path directory, State level, VisitedSet closed, int memoryLimit) {
+        if (level.getWidth() * level.getMap().length >= NONE)
+            throw new IllegalArgumentException("Levels of 65535 cells or more cannot be packed into records");
+        if (memoryLimit < 4)
+            throw new IllegalArgumentException("Memory limit must be at least 4 entries: " + memoryLimit);
+
+        this.directory = directory;
+        this.level = level;
+        this.closed = closed;
+        this.memoryLimit = memoryLimit;
+        this.recordSize = 2 + 4 + 4 + 4 + 2 + 1 + 2 * level.getCrates().length;
+        this.buckets = new ArrayList<>();
+        this.files = new FileChannel[64];
+        this.paths = new Path[64];
+        this.written = new long[64];
+        this.read = new long[64];
+        this.lowestCost = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Adds an entry, spilling the costliest buckets first if memory is full.
+     *
+     * @param entry Entry to add
+     * @param cost  Cost the entry is sorted by
+     */
+    public void add(Entry entry, int cost) {
+        if (inMemory >= memoryLimit)
+            spill();
+
+        while (buckets.size() <= cost)
+            buckets.add(null);
+        if (buckets.get(cost) == null)
+            buckets.set(cost, new Bucket());
+
+        buckets.get(cost).add(entry);
+        inMemory++;
+        lowestCost = Math.min(lowestCost, cost);
+    }
+
+    /**
+     * Removes an entry of the lowest cost, reading a batch back from disk
+     * first if the disk holds a lower cost than memory.
+     *
+     * @return  Entry with the lowest cost, or null if the list is empty
+     */
+    public Entry poll() {
+        while (inMemory > 0 || onDisk > 0) {
+            int memoryCost = lowestMemoryCost();
+            int diskCost = lowestDiskCost();
+
+            if (diskCost < memoryCost) {
+                load(diskCost);
+                continue;
+            }
+
+            inMemory--;
+            return buckets.get(memoryCost).poll();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the number of entries in memory and on disk, duplicates included.
+     *
+     * @return  Entry count
+     */
+    public long size() {
+        return inMemory + onDisk;
+    }
+
+    /**
+     * Returns the number of entries currently on disk.
+     *
+     * @return  Entry count
+     */
+    public long spilled() {
+        return onDisk;
+    }
+
+    /**
+     * Closes and deletes every spill file.
+     */
+    @Override
+    public void close() {
+        for (int cost = 0; cost < files.length; cost++) {
+            if (files[cost] != null)
+                discard(cost);
+        }
+    }
+
+    /**
+     * Writes the costliest in-memory buckets to disk until half the memory
+     * limit is free. Each bucket is appended as one mapped region.
+     */
+    private void spill() {
+        for (int cost = buckets.size() - 1; cost >= 0 && inMemory > memoryLimit / 2; cost--) {
+            Bucket bucket = buckets.get(cost);
+
+            if (bucket == null || bucket.isEmpty())
+                continue;
+
+            try {
+                MappedByteBuffer buffer = file(cost).map(FileChannel.MapMode.READ_WRITE, written[cost],
+                    (long) bucket.size() * recordSize);
+
+                for (List<Entry> stack : bucket.stacks) {
+                    if (stack != null) {
+                        for (Entry entry : stack)
+                            write(buffer, entry);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot spill open list to " + directory, e);
+            }
+
+            written[cost] += (long) bucket.size() * recordSize;
+            onDisk += bucket.size();
+            inMemory -= bucket.size();
+            buckets.set(cost, null);
+        }
+    }
+
+    /**
+     * Reads a batch of one cost back into memory, dropping states that were
+     * expanded since they were spilled and repeats within the batch.
+     *
+     * @param cost  Cost of the spill file to read
+     */
+    private void load(int cost) {
+        // At most a quarter of the memory, so reading back never spills this bucket again
+        long count = Math.min(Math.min(BATCH, memoryLimit / 4), (written[cost] - read[cost]) / recordSize);
+        VisitedSet batch = new KeyTable((int) Math.max(count, 2));
+
+        try {
+            MappedByteBuffer buffer = files[cost].map(FileChannel.MapMode.READ_ONLY, read[cost], count * recordSize);
+
+            for (long i = 0; i < count; i++) {
+                Entry entry = read(buffer);
+
+                if (!closed.contains(entry.state) && batch.add(entry.state))
+                    add(entry, cost);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read spilled open list from " + directory, e);
+        }
+
+        read[cost] += count * recordSize;
+        onDisk -= count;
+
+        if (read[cost] == written[cost])
+            discard(cost);
+    }
+
+    /**
+     * Returns the lowest cost with an entry in memory.
+     *
+     * @return  Cost, or Integer.MAX_VALUE if memory is empty
+     */
+    private int lowestMemoryCost() {
+        if (inMemory == 0)
+            return Integer.MAX_VALUE;
+
+        while (buckets.get(lowestCost) == null || buckets.get(lowestCost).isEmpty())
+            lowestCost++;
+
+        return lowestCost;
+    }
+
+    /**
+     * Returns the lowest cost with entries left on disk.
+     *
+     * @return  Cost, or Integer.MAX_VALUE if nothing is on disk
+     */
+    private int lowestDiskCost() {
+        if (onDisk == 0)
+            return Integer.MAX_VALUE;
+
+        for (int cost = 0; cost < files.length; cost++) {
+            if (files[cost] != null && read[cost] < written[cost])
+                return cost;
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the spill file of a cost, creating it under a name no earlier
+     * file of the search had if needed.
+     *
+     * @param cost  Cost of the bucket
+     * @return      Open file channel
+     * @throws IOException  If the file cannot be created
+     */
+    private FileChannel file(int cost) throws IOException {
+        if (cost >= files.length) {
+            int length = Math.max(cost + 1, files.length * 2);
+            files = Arrays.copyOf(files, length);
+            paths = Arrays.copyOf(paths, length);
+            written = Arrays.copyOf(written, length);
+            read = Arrays.copyOf(read, length);
+        }
+
+        if (files[cost] == null) {
+            paths[cost] = directory.resolve("open-" + cost + "-" + generation++ + ".bin");
+            files[cost] = FileChannel.open(paths[cost], StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            written[cost] = 0;
+            read[cost] = 0;
+        }
+
+        return files[cost];
+    }
+
+    /**
+     * Closes and deletes the spill file of a cost. A file that is still mapped
+     * cannot be deleted on some systems, so it is left for the JVM to remove.
+     *
+     * @param cost  Cost of the bucket
+     */
+    private void discard(int cost) {
+        Path path = paths[cost];
+
+        try {
+            files[cost].close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+
+        onDisk -= (written[cost] - read[cost]) / recordSize;
+        files[cost] = null;
+        paths[cost] = null;
+    }
+
+    /**
+     * Packs an entry at the position of the buffer. Cells fit in two bytes
+     * since levels are limited to 65535 cells, with NONE left for -1.
+     *
+     * @param buffer    Buffer to write to
+     * @param entry     Entry to pack
+     */
+    private static void write(MappedByteBuffer buffer, Entry entry) {
+        buffer.putShort((short) entry.state.getPlayer());
+        buffer.putInt(entry.depth);
+        buffer.putInt(entry.heuristic);
+        buffer.putInt(entry.parentId);
+        buffer.putShort((short) entry.from);
+        buffer.put(entry.move);
+
+        for (int crate : entry.state.getCrates())
+            buffer.putShort((short) crate);
+    }
+
+    /**
+     * Unpacks the entry at the position of the buffer.
+     *
+     * @param buffer    Buffer to read from
+     * @return          Entry with its state rebuilt
+     */
+    private Entry read(MappedByteBuffer buffer) {
+        int player = Short.toUnsignedInt(buffer.getShort());
+        int depth = buffer.getInt();
+        int heuristic = buffer.getInt();
+        int parentId = buffer.getInt();
+        int from = Short.toUnsignedInt(buffer.getShort());
+        from = from == NONE ? -1 : from;
+        byte move = buffer.get();
+        int[] crates = new int[level.getCrates().length];
+
+        for (int i = 0; i < crates.length; i++)
+            crates[i] = Short.toUnsignedInt(buffer.getShort());
+
+        return new Entry(level.at(player, crates), depth, heuristic, parentId, from, move);
+    }
+}
@@ -0,0 +1,251 @@
+package solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Push-level A* for levels whose search does not fit in the heap. The open
+ * list is a {@link SpillQueue}, which writes its cold buckets to disk, and
+ * the closed set only holds the states that were expanded, so duplicates of
+ * open entries are caught late, when they are read back or polled. Entries
+ * point to their parent by its expansion id instead of a reference, and each
+ * expansion is appended to a log file, so expanded nodes take no heap either.
+ * The solution is rebuilt by following the ids back through the log.
+ *
+ * Heap use comes down to the closed set and the in-memory part of the open
+ * list. All files live in one directory that is deleted when the search ends.
+ */
+public class SpillSearch {
+    private final State initialState;       // State the level starts in
+    private final boolean[] deadSquares;    // Dead square flags indexed by cell
+    private final ProgressCounter progress; // Cancellation check and expansion count
+    private final SolverOptions options;    // Closed set, weight, spill directory and memory limit
+
+    /**
+     * Creates an external search for a level.
+     *
+     * @param initialState  State the level starts in
+     * @param deadSquares   Dead square flags indexed by cell
+     * @param options       Closed set, weight, spill directory and memory limit to use
+     * @param progress      Cancellation check and counter of the expansions
+     */
+    SpillSearch(State initialState, boolean[] deadSquares, SolverOptions options, ProgressCounter progress) {
+        this.initialState = initialState;
+        this.deadSquares = deadSquares;
+        this.progress = progress;
+        this.options = options;
+    }
+
+    /**
+     * Runs the search with its files in a fresh directory.
+     *
+     * @return  A string representing the sequence of moves, empty if none
+     */
+    public String solve() {
+        Path directory;
+
+        try {
+            directory = options.getSpillDirectory() == null
+                ? Files.createTempDirectory("sokobot-spill")
+                : Files.createTempDirectory(options.getSpillDirectory(), "sokobot-spill");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill directory", e);
+        }
+
+        try {
+            return solve(directory);
+        } finally {
+            directory.toFile().delete();    // Only succeeds once every file in it is gone
+            directory.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Runs the search.
+     *
+     * @param directory Directory for the spill files and the expansion log
+     * @return          A string representing the sequence of moves, empty if none
+     */
+    private String solve(Path directory) {
+        PushExpander expander = new PushExpander(initialState, deadSquares, options.isLearnPatterns());
+        VisitedSet closed = makeClosed();
+        int childCount, id;
+
+        try (SpillQueue queue = new SpillQueue(directory, initialState, closed, options.getMemoryLimit());
+             ExpansionLog log = new ExpansionLog(directory.resolve("expanded.bin"))) {
+            State root = expander.normalize(initialState);
+            int heuristic = expander.estimate(root);
+            if (heuristic >= Assignment.INFEASIBLE)
+                return "";
+
+            queue.add(new SpillQueue.Entry(root, 0, heuristic, -1, -1, (byte) -1),
+                Node.computeCost(0, heuristic, options.getWeight()));
+
+            SpillQueue.Entry current;
+            while ((current = queue.poll()) != null) {
+                if (progress.isCancelled())
+                    return "";                  // Cancelled, e.g. by a faster search
+
+                if (closed.contains(current.state))
+                    continue;                   // Duplicate left in the open list
+                if (closed.isFull())
+                    return "";                  // Out of room for new states, give up
+
+                if (current.state.isGoalState())
+                    return rebuildPath(expander, current, log);
+
+                closed.add(current.state);
+                progress.expanded(current.heuristic, (int) Math.min(queue.size(), Integer.MAX_VALUE));
+                id = log.append(current.parentId, current.from, current.move);
+                childCount = expander.expand(current.state, closed);
+
+                for (int i = 0; i < childCount; i++) {
+                    int depth = current.depth + 1;
+
+                    queue.add(new SpillQueue.Entry(expander.child(i), depth, expander.heuristic(i), id,
+                            expander.pushedFrom(i), (byte) expander.move(i).ordinal()),
+                        Node.computeCost(depth, expander.heuristic(i), options.getWeight()));
+                }
+            }
+
+            return "";
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot use spill directory " + directory, e);
+        }
+    }
+
+    /**
+     * Creates the closed set chosen in the options.
+     *
+     * @return  An empty visited set
+     */
+    private VisitedSet makeClosed() {
+        return options.getVisited().create(options.getVisitedCapacity());
+    }
+
+    /**
+     * Follows the expansion ids from the goal back to the root, replays the
+     * pushes on the initial state and rebuilds the move string.
+     *
+     * @param expander  Push generator whose macros and flood fill rebuild the pushes and walks
+     * @param goal      Entry holding the solved state
+     * @param log       Expansion log of the search
+     * @return          A string representing the sequence of moves
+     * @throws IOException  If the log cannot be read
+     */
+    private String rebuildPath(PushExpander expander, SpillQueue.Entry goal, ExpansionLog log)
+            throws IOException {
+        List<int[]> pushes = new ArrayList<>();     // (from, move) from the goal back to the root
+        int parentId = goal.parentId;
+        int from = goal.from;
+        int move = goal.move;
+
+        while (from >= 0) {
+            pushes.add(new int[] {from, move});
+
+            int[] record = log.read(parentId);
+            parentId = record[0];
+            from = record[1];
+            move = record[2];
+        }
+
+        State state = initialState;
+        Node node = new Node(state, 0);
+
+        for (int i = pushes.size() - 1; i >= 0; i--) {
+            Move push = Move.values()[pushes.get(i)[1]];
+            int crate = pushes.get(i)[0];
+            int target = expander.landing(state, crate, push);
+
+            state = state.pushTo(crate, crate, target);
+            node = new Node(state, node, push, 0);
+        }
+
+        return expander.rebuildPath(node, initialState);
+    }
+
+    /**
+     * Append-only file of one record per expanded entry: the expansion id of
+     * its parent and the push that led to it. Records are written through a
+     * memory-mapped window that moves along the file.
+     */
+    private static class ExpansionLog implements Closeable {
+        private static final int RECORD = 4 + 2 + 1;      // Parent id, from cell, move
+        private static final int WINDOW = 1 << 20;        // Records mapped at a time
+        private static final int NONE = 0xFFFF;           // Packed cell standing for -1, as in SpillQueue
+
+        private final Path path;                // File holding the records
+        private final FileChannel channel;      // Open channel on the file
+        private MappedByteBuffer window;        // Mapped region being written
+        private int count;                      // Number of records written
+
+        /**
+         * Creates an empty log.
+         *
+         * @param path  File to create
+         * @throws IOException  If the file cannot be created
+         */
+        ExpansionLog(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Appends a record.
+         *
+         * @param parentId  Expansion id of the parent, -1 for the root
+         * @param from      Cell the crate was pushed from, -1 for the root
+         * @param move      Ordinal of the push direction, -1 for the root
+         * @return          Expansion id of the record
+         * @throws IOException  If the next window cannot be mapped
+         */
+        int append(int parentId, int from, byte move) throws IOException {
+            if (count % WINDOW == 0)
+                window = channel.map(FileChannel.MapMode.READ_WRITE, (long) count * RECORD, (long) WINDOW * RECORD);
+
+            window.putInt(parentId);
+            window.putShort((short) from);
+            window.put(move);
+            return count++;
+        }
+
+        /**
+         * Reads a record back.
+         *
+         * @param id    Expansion id
+         * @return      Parent id, from cell (-1 for the root) and move ordinal
+         * @throws IOException  If the file cannot be read
+         */
+        int[] read(int id) throws IOException {
+            ByteBuffer record = ByteBuffer.allocate(RECORD);
+
+            channel.read(record, (long) id * RECORD);
+            record.flip();
+
+            int parentId = record.getInt();
+            int from = Short.toUnsignedInt(record.getShort());
+
+            return new int[] {parentId, from == NONE ? -1 : from, record.get()};
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                path.toFile().deleteOnExit();   // Still mapped on some systems
+            }
+        }
+    }
+}
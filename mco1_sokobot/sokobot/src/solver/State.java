@@ -1,46 +1,52 @@
 package solver;
 
-import java.awt.Point;
-import java.util.ArrayDeque;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 /**
  * Represents the state of the Sokoban game at any point in time.
+ * Positions are stored as cell indices (row * width + column) so that
+ * states can be compared and hashed without allocating any objects.
  */
 public final class State {
-    private final int playerRow;      // Row position of the player
-    private final int playerColumn;   // Column position of the player
-    private final Set<Point> crates;  // Set of positions of the crates
-    private final Set<Point> goals;   // Set of positions of the goals
-    private final char[][] map;       // 2D array representing the map layout
-    public static Map<Point, int[][]> heuristicsMap;  // 2D Heuristic maps for each goal
-
-    /** 
+    private final int player;         // Cell index of the player
+    private final int[] crates;       // Sorted cell indices of the crates
+    private final Level level;        // Map, goals and tables shared by all states of the level
+    private final int width;          // Width of the map, used to pack cell indices
+    private final long crateKey;      // XOR of the Zobrist keys of all crates
+    private final long key;           // Zobrist key of the whole state (crates and player)
+
+    /**
      * Constructs a new state of the board.
-     * 
-     * @param playerRow     Row position of the player
-     * @param playerColumn  Column position of the player
-     * @param crates        Set of positions of the crates
-     * @param goals         Set of positions of the goals 
-     * @param map           2D array representing the map
+     *
+     * @param player  Cell index of the player
+     * @param crates  Sorted cell indices of the crates
+     * @param level   Level the state belongs to
+     */
+    public State(int player, int[] crates, Level level) {
+      this(player, crates, level.getZobrist().crates(crates), level);
+    }
+
+    /**
+     * Constructs a new state of the board whose crate key is already known.
+     *
+     * @param player    Cell index of the player
+     * @param crates    Sorted cell indices of the crates
+     * @param crateKey  XOR of the Zobrist keys of the crates
+     * @param level     Level the state belongs to
      */
-    public State(int playerRow, int playerColumn, Set<Point> crates, Set<Point> goals, char[][] map) {
-      this.playerRow = playerRow;
-      this.playerColumn = playerColumn;
-      this.crates = Collections.unmodifiableSet(defensiveCopy(crates));
-      this.goals = Collections.unmodifiableSet(defensiveCopy(goals));
-      this.map = map;
+    private State(int player, int[] crates, long crateKey, Level level) {
+      this.player = player;
+      this.crates = crates;
+      this.level = level;
+      this.width = level.getWidth();
+      this.crateKey = crateKey;
+      this.key = crateKey ^ level.getZobrist().player(player);
     }
 
     /**
-     * Creates a state object from map and item data.
-     * 
+     * Creates a state object from map and item data, building a new level
+     * with its tables.
+     *
      * @param mapData     2D char array representing the map
      * @param itemsData   2D char array representing the player and crates
      * @param width       Map width
@@ -48,117 +54,228 @@ public final class State {
      * @return            State object representing the initial state
      */
     public static State fromLevel(char[][] mapData, char[][] itemsData, int width, int height) {
-        Set<Point> crates = new HashSet<>();
-        Set<Point> goals = new HashSet<>();
-        int playerRow = -1;
-        int playerColumn = -1;
+        return fromLevel(new Level(mapData, width, height), itemsData);
+    }
 
+    /**
+     * Creates the initial state of an already built level from item data.
+     *
+     * @param level       Level the state belongs to
+     * @param itemsData   2D char array representing the player and crates
+     * @return            State object representing the initial state
+     */
+    public static State fromLevel(Level level, char[][] itemsData) {
+        int width = level.getWidth();
+        int height = level.getHeight();
+        int[] crates = new int[width * height];
+        int crateCount = 0;
+        int player = -1;
+
+        // Cells are visited in index order, so the crates come out sorted
         for (int row = 0; row < height; row++) {
             for (int column = 0; column < width; column++) {
-                if (mapData[row][column] == '.') 
-                    goals.add(point(column, row));
-
-                if (itemsData[row][column] == '@') {
-                    playerRow = row;
-                    playerColumn = column;
-                } else if (itemsData[row][column] == '$')
-                    crates.add(point(column, row));
+                if (itemsData[row][column] == '@')
+                    player = row * width + column;
+                else if (itemsData[row][column] == '$')
+                    crates[crateCount++] = row * width + column;
             }
         }
 
-        if (playerRow == -1 || playerColumn == -1) {
+        if (player == -1) {
             throw new IllegalArgumentException("Map does not contain a player '@'");
         }
 
-        heuristicsMap = getHeuristicsMap(goals, mapData, width, height);
-
-        return new State(playerRow, playerColumn, crates, goals, mapData);
+        return new State(player, Arrays.copyOf(crates, crateCount), level);
     }
 
     /**
      * Checks if the current state is a goal state.
-     * 
+     *
      * @return True if state is goal state, false otherwise
      */
     public boolean isGoalState() {
-        return goals.containsAll(crates);
+        for (int crate : crates) {
+            if (!isGoal(crate))
+                return false;
+        }
+
+        return true;
     }
 
     /**
      * Checks if there is a crate at the specified position.
-     * 
+     *
      * @param row     Row of the position
      * @param column  Column of the position
      * @return        True if there is a crate at the position, false otherwise
      */
     public boolean hasCrateAt(int row, int column) {
-        return crates.contains(point(column, row));
+        return hasCrateAt(row * width + column);
+    }
+
+    /**
+     * Checks if there is a crate at the specified cell.
+     *
+     * @param cell    Cell index of the position
+     * @return        True if there is a crate at the cell, false otherwise
+     */
+    public boolean hasCrateAt(int cell) {
+        return Arrays.binarySearch(crates, cell) >= 0;
     }
 
     /**
      * Checks if the specified position is a wall.
-     * 
+     *
      * @param row     Row of the position
      * @param column  Column of the position
      * @return        True if the position is a wall, false otherwise
      */
     public boolean isWall(int row, int column) {
-        return map[row][column] == '#';
+        return level.isWall(row, column);
+    }
+
+    /**
+     * Checks if the specified cell is a goal.
+     *
+     * @param cell    Cell index of the position
+     * @return        True if the cell is a goal, false otherwise
+     */
+    public boolean isGoal(int cell) {
+        return level.isGoal(cell);
     }
 
     /**
-     * Checks if the specified point is a wall.
-     * 
-     * @param point   Point to check
+     * Checks if the specified position is a wall.
+     *
+     * @param row     Row of the position
+     * @param column  Column of the position
      * @param mapData 2D char array representing the map
-     * @return        True if the point is a wall, false otherwise
+     * @return        True if the position is a wall, false otherwise
      */
-    public static boolean isWall(Point point, char[][] mapData) {
-        return mapData[point.y][point.x] == '#';
+    public static boolean isWall(int row, int column, char[][] mapData) {
+        return mapData[row][column] == '#';
     }
 
     /**
      * Checks if the specified position is within the bounds of the map.
-     * 
+     *
      * @param row     Row of the position
      * @param column  Column of the position
      * @return        True if the position is within bounds, false otherwise
      */
     public boolean isWithinBounds(int row, int column) {
-        return row >= 0 && row < map.length &&
-               column >= 0 && column < map[row].length;
+        return row >= 0 && row < level.getHeight() &&
+               column >= 0 && column < width;
     }
 
     /**
-     * Checks if the specified point is within the bounds of the map.
-     * 
-     * @param point   Point to check
-     * @param width   Width of the map
-     * @param height  Height of the map
-     * @return        True if the point is within bounds, false otherwise
+     * Creates a new state with the player moved to the given position and
+     * the crates left untouched.
+     *
+     * @param newPlayerRow      New player row position
+     * @param newPlayerColumn   New player column position
+     * @return                  New state
      */
-    public static boolean isWithinBounds(Point point, int width, int height) {
-        return point.x >= 0 &&
-               point.x < width &&
-               point.y >= 0 &&
-               point.y < height;
+    public State moveTo(int newPlayerRow, int newPlayerColumn) {
+        return moveTo(newPlayerRow * width + newPlayerColumn);
     }
 
     /**
-     * Creates a new state with updated player position and crate positions.
-     * 
+     * Creates a new state with the player moved to the given cell and the
+     * crates left untouched.
+     *
+     * @param newPlayer   New player cell index
+     * @return            New state
+     */
+    public State moveTo(int newPlayer) {
+        return new State(newPlayer, crates, crateKey, level);
+    }
+
+    /**
+     * Creates a state of the same level with the player and crates at the
+     * given cells, such as one read back from disk.
+     *
+     * @param newPlayer   Player cell index
+     * @param newCrates   Sorted crate cell indices
+     * @return            New state
+     */
+    public State at(int newPlayer, int[] newCrates) {
+        return new State(newPlayer, newCrates, level);
+    }
+
+    /**
+     * Creates the solved state of the level with every goal holding a crate,
+     * for levels with as many crates as goals.
+     *
+     * @param newPlayer   Player cell index
+     * @return            New state
+     */
+    public State solved(int newPlayer) {
+        return new State(newPlayer, level.getGoals(), level);
+    }
+
+    /**
+     * Creates a new state with the player moved to the given cell and one
+     * crate pushed from one cell to another.
+     *
+     * @param newPlayer   New player cell index
+     * @param from        Cell index the crate is pushed from
+     * @param to          Cell index the crate is pushed to
+     * @return            New state
+     */
+    public State pushTo(int newPlayer, int from, int to) {
+        Zobrist zobrist = level.getZobrist();
+
+        return new State(newPlayer, moveCrate(crates, from, to),
+            crateKey ^ zobrist.crate(from) ^ zobrist.crate(to), level);
+    }
+
+    /**
+     * Creates a new state with the player moved to the given position and
+     * one crate pushed from one cell to another. The crate key is updated
+     * with two XORs instead of being rehashed.
+     *
      * @param newPlayerRow      New player row position
      * @param newPlayerColumn   New player column position
-     * @param newCrates         New set of crate positions
-     * @return                  New state     
+     * @param from              Cell index the crate is pushed from
+     * @param to                Cell index the crate is pushed to
+     * @return                  New state
      */
-    public State moveTo(int newPlayerRow, int newPlayerColumn, Set<Point> newCrates) {
-        return new State(newPlayerRow, newPlayerColumn, newCrates, goals, map);
+    public State pushTo(int newPlayerRow, int newPlayerColumn, int from, int to) {
+        return pushTo(newPlayerRow * width + newPlayerColumn, from, to);
     }
 
     /**
-     * Checks if this state is equal to another state.
-     * 
+     * Returns a sorted copy of the crate array with one crate moved. Only the
+     * entries between the old and new position are shifted.
+     *
+     * @param crates  Sorted cell indices of the crates
+     * @param from    Cell index of the crate being moved
+     * @param to      Cell index the crate is moved to
+     * @return        New sorted array of crate cell indices
+     */
+    public static int[] moveCrate(int[] crates, int from, int to) {
+        int[] updated = crates.clone();
+        int i = Arrays.binarySearch(updated, from);
+
+        // Shift neighbours into the gap until the new cell fits in order
+        while (i > 0 && updated[i - 1] > to) {
+            updated[i] = updated[i - 1];
+            i--;
+        }
+        while (i < updated.length - 1 && updated[i + 1] < to) {
+            updated[i] = updated[i + 1];
+            i++;
+        }
+        updated[i] = to;
+
+        return updated;
+    }
+
+    /**
+     * Checks if this state is equal to another state. The Zobrist keys are
+     * compared first so the crate arrays are only scanned when keys collide.
+     *
      * @param obj   State to compare
      * @return      True if states are equal, false otherwise
      */
@@ -169,152 +286,104 @@ public final class State {
 
         if (!(obj instanceof State))
             return false;
-        
+
         State other = (State) obj;
-        return playerRow == other.playerRow
-            && playerColumn == other.playerColumn
-            && crates.equals(other.crates);
+        return key == other.key
+            && player == other.player
+            && Arrays.equals(crates, other.crates);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(playerRow, playerColumn, crates);
+        return (int) (key ^ (key >>> 32));
     }
 
     @Override
     public String toString() {
-      return "State[row=" + playerRow + ", col=" + playerColumn
-          + ", crates=" + crates + "]";
+      return "State[row=" + getPlayerRow() + ", col=" + getPlayerColumn()
+          + ", crates=" + Arrays.toString(crates) + "]";
     }
 
-    /** 
-     * Creates a defensive copy of the set of points.
-     * 
-     * @param points    Set of points to copy
-     * @return          Copy of the set of points
-    */
-    public static Set<Point> defensiveCopy(Set<Point> points) {
-        return points;
+    /**
+     * Returns the Zobrist key of this state.
+     *
+     * @return 64-bit state key
+     */
+    public long getKey() {
+        return key;
     }
 
     /**
-     * Creates a new Point object from column and row points.
-     * 
-     * @param column  Column index
-     * @param row     Row index
-     * @return        Point representing the column and row
+     * Returns the player's cell index.
+     *
+     * @return Player's cell index
      */
-    public static Point point(int column, int row) {
-        return new Point(column, row);
+    public int getPlayer() {
+        return player;
     }
 
     /**
      * Returns the player's row position.
-     * 
+     *
      * @return Player's row
      */
     public int getPlayerRow() {
-        return playerRow;
+        return player / width;
     }
 
     /**
      * Returns the player's column position.
-     * 
+     *
      * @return Player's column
      */
     public int getPlayerColumn() {
-        return playerColumn;
+        return player % width;
     }
 
     /**
-     * Returns the set of crate positions.
-     * 
-     * @return Set of crate positions
+     * Returns the sorted cell indices of the crates. The array is shared
+     * between states and must not be modified.
+     *
+     * @return Sorted crate cell indices
      */
-    public Set<Point> getCrates() {
+    public int[] getCrates() {
         return crates;
     }
 
     /**
-     * Returns the set of goal positions.
-     * 
-     * @return Set of goal positions
+     * Returns the sorted cell indices of the goals. The array is shared
+     * between states and must not be modified.
+     *
+     * @return Sorted goal cell indices
      */
-    public Set<Point> getGoals() {
-      return goals;
+    public int[] getGoals() {
+      return level.getGoals();
     }
 
     /**
      * Returns the map layout.
-     * 
+     *
      * @return 2D char array map
      */
     public char[][] getMap() {
-      return map;
+      return level.getMap();
     }
 
     /**
-     * Computes a BFS-based heuristic map from the goal to all reachable positions.
-     * 
-     * @param goal    Goal position
-     * @param mapData 2D char array map
-     * @param width   Width of the map
-     * @param height  Height of the map
-     * @return        2D int array of heuristic distances
+     * Returns the width of the map used to pack cell indices.
+     *
+     * @return Width of the map
      */
-    public static int[][] getGoalHeuristics(Point goal, char[][] mapData, int width, int height) {
-        // Record that stores the coordinates and distance
-        record Cell(int x, int y, int distance) {}
-        // Stores distance from goal to each cell
-        int[][] heuristics = new int[height][width];
-        int x, y;
-
-        // BFS Queue
-        ArrayDeque<Cell> queue = new ArrayDeque<>();
-        // Tracks visited cells
-        boolean[][] visited = new boolean[height][width];
-
-        // Start from the goal
-        queue.add(new Cell(goal.x, goal.y, 0));
-        visited[goal.y][goal.x] = true;
-        
-        while(!queue.isEmpty()) {
-            Cell current = queue.poll();
-            heuristics[current.y][current.x] = current.distance;    // Set distance for current cell
-
-            // Explore all 4 moves
-            for (Move move : Move.values()) {
-                x = current.x + move.getColumnDelta();
-                y = current.y + move.getRowDelta();
-                
-                // If it is within bounds, not a wall, and not yet visited, add cell to the queue.
-                if(y >= 0 && y < height && x >= 0 && x < width &&
-                  !isWall(new Point(x, y), mapData) && !visited[y][x]) {
-
-                    visited[y][x] = true;
-                    queue.add(new Cell(x, y, current.distance + 1));
-                }
-            }
-        }
-
-        return heuristics;
+    public int getWidth() {
+      return width;
     }
 
     /**
-     * Generates heuristic maps for the available goals.
-     * 
-     * @param goals   Set of goal positions
-     * @param mapData 2D char array map
-     * @param width   Width of the map
-     * @param height  Height of the map
-     * @return        Map of goal points to their heuristic distance maps
-     */ 
-    public static Map<Point, int[][]> getHeuristicsMap(Set<Point> goals, char[][] mapData, int width, int height) {
-      Map<Point, int[][]> heuristicsMap = new HashMap<>();
-
-      for (Point goal : goals)
-        heuristicsMap.put(goal, getGoalHeuristics(goal, mapData, width, height));
-      
-      return heuristicsMap;
+     * Returns the level this state belongs to.
+     *
+     * @return Level with the map and its tables
+     */
+    public Level getLevel() {
+      return level;
     }
 }
@@ -0,0 +1,39 @@
+package solver;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Closed set that keeps every state in a HashSet. Exact, but each entry costs
+ * a hash node, the state and its crate array. It never reports being full.
+ */
+public class StateSet implements VisitedSet {
+    private final Set<State> states;    // States added so far
+
+    /**
+     * Creates an empty set.
+     */
+    public StateSet() {
+        this.states = new HashSet<>();
+    }
+
+    @Override
+    public boolean contains(State state) {
+        return states.contains(state);
+    }
+
+    @Override
+    public boolean add(State state) {
+        return states.add(state);
+    }
+
+    @Override
+    public int size() {
+        return states.size();
+    }
+
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+}
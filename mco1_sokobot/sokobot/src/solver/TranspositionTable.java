@@ -0,0 +1,116 @@
+package solver;
+
+/**
+ * Fixed-size table of the lowest number of pushes each state was reached
+ * with, for the IDA* search. It never grows: every key hashes to a bucket of
+ * two slots, and when both hold other states one of them is overwritten.
+ *
+ * The first slot of a bucket is depth-preferred: it keeps the entry reached
+ * with the fewest pushes, whose subtree is the largest, unless that entry is
+ * left over from an earlier iteration. The second slot always takes the new
+ * entry, so recent transpositions are still caught while the first slot is
+ * taken.
+ */
+public class TranspositionTable {
+    private static final long EMPTY = 0L;               // Marks a free slot
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L; // Stands in for a key that is 0
+
+    private final long[] keys;      // State key per slot, EMPTY where free
+    private final long[] entries;   // Pushes << 32 | iteration per slot
+    private final int mask;         // Number of buckets minus one
+
+    /**
+     * Creates a table with room for about the given number of entries.
+     *
+     * @param size  Number of entries, rounded down to a power of two of at least 2
+     */
+    public TranspositionTable(int size) {
+        int slots = Math.max(2, Integer.highestOneBit(size));
+
+        this.keys = new long[slots];
+        this.entries = new long[slots];
+        this.mask = slots / 2 - 1;
+    }
+
+    /**
+     * Checks if a state was already reached in a way that makes searching it
+     * again pointless: with fewer pushes, or with as many pushes earlier in
+     * the same iteration.
+     *
+     * @param key       Zobrist key of the state
+     * @param pushes    Number of pushes the state was reached with now
+     * @param iteration Number of the current IDA* iteration
+     * @return          True if the subtree can be skipped
+     */
+    public boolean isDominated(long key, int pushes, int iteration) {
+        int slot = find(keyOf(key));
+
+        if (slot < 0)
+            return false;
+
+        int known = (int) (entries[slot] >>> 32);
+
+        return known < pushes || known == pushes && (int) entries[slot] == iteration;
+    }
+
+    /**
+     * Records that a state is being searched with the given number of pushes.
+     *
+     * @param key       Zobrist key of the state
+     * @param pushes    Number of pushes the state was reached with
+     * @param iteration Number of the current IDA* iteration
+     */
+    public void store(long key, int pushes, int iteration) {
+        long stored = keyOf(key);
+        long entry = (long) pushes << 32 | (iteration & 0xFFFFFFFFL);
+        int first = index(stored);
+        int slot = find(stored);
+
+        if (slot < 0) {
+            long old = entries[first];
+            boolean keepFirst = keys[first] != EMPTY && (int) (old >>> 32) < pushes && (int) old == iteration;
+
+            slot = keepFirst ? first + 1 : first;
+        }
+
+        keys[slot] = stored;
+        entries[slot] = entry;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @param key   Stored form of the key
+     * @return      Slot index, or -1 if the key is not in the table
+     */
+    private int find(long key) {
+        int first = index(key);
+
+        if (keys[first] == key)
+            return first;
+        if (keys[first + 1] == key)
+            return first + 1;
+
+        return -1;
+    }
+
+    /**
+     * Returns the first slot of the bucket of a key.
+     *
+     * @param key   Stored form of the key
+     * @return      Slot index
+     */
+    private int index(long key) {
+        return ((int) (key >>> 32 ^ key) & mask) * 2;
+    }
+
+    /**
+     * Returns the form a key is stored in, never EMPTY.
+     *
+     * @param key   Zobrist key
+     * @return      Stored key
+     */
+    private static long keyOf(long key) {
+        return key == EMPTY ? ZERO_KEY : key;
+    }
+}
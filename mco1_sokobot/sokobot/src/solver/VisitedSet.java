@@ -0,0 +1,38 @@
+package solver;
+
+/**
+ * Closed set of the search: remembers which states were already generated.
+ */
+public interface VisitedSet {
+    /**
+     * Checks if a state was already added.
+     *
+     * @param state State to look up
+     * @return      True if the state was added before
+     */
+    boolean contains(State state);
+
+    /**
+     * Adds a state. Callers should check {@link #isFull()} first, since a
+     * bounded set cannot take more states once it is full.
+     *
+     * @param state State to add
+     * @return      True if the state was not in the set yet
+     * @throws IllegalStateException if the set is full
+     */
+    boolean add(State state);
+
+    /**
+     * Returns the number of states added.
+     *
+     * @return State count
+     */
+    int size();
+
+    /**
+     * Checks if the set reached its capacity.
+     *
+     * @return True if no more states can be added
+     */
+    boolean isFull();
+}
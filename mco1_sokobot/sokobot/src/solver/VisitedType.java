@@ -0,0 +1,23 @@
+package solver;
+
+/**
+ * Enum representing the closed set implementations the search can use.
+ */
+public enum VisitedType {
+	STATES,		// HashSet of whole states, exact and unbounded
+	KEYS;		// Open-addressing table of 64-bit state keys, compact and bounded
+
+	/**
+     * Creates an empty closed set of this type.
+     *
+     * @param capacity  Number of states a bounded set must be able to hold
+     * @return          New closed set
+     */
+	public VisitedSet create(int capacity) {
+		switch (this) {
+			case STATES -> { return new StateSet(); }
+			case KEYS -> { return new KeyTable(capacity); }
+			default -> throw new IllegalStateException("Unhandled visited set: " + this);
+		}
+  	}
+}
@@ -0,0 +1,67 @@
+package solver;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random 64-bit keys for every cell of a level, one set for crates and one
+ * for the player. A state's key is the XOR of the keys of everything on the
+ * board, so pushing a single crate only needs two XORs to update it.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5DEECE66DL;   // Fixed so keys are reproducible between runs
+
+    private final long[] crateKeys;     // Key for a crate standing on each cell
+    private final long[] playerKeys;    // Key for the player standing on each cell
+
+    /**
+     * Generates the keys for a level with the given number of cells.
+     *
+     * @param cells Number of cells (width * height) of the level
+     */
+    public Zobrist(int cells) {
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        this.crateKeys = new long[cells];
+        this.playerKeys = new long[cells];
+
+        for (int i = 0; i < cells; i++) {
+            crateKeys[i] = random.nextLong();
+            playerKeys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Returns the key of a crate standing on the given cell.
+     *
+     * @param cell  Cell index
+     * @return      Crate key
+     */
+    public long crate(int cell) {
+        return crateKeys[cell];
+    }
+
+    /**
+     * Returns the key of the player standing on the given cell.
+     *
+     * @param cell  Cell index
+     * @return      Player key
+     */
+    public long player(int cell) {
+        return playerKeys[cell];
+    }
+
+    /**
+     * Computes the combined key of a set of crates from scratch.
+     *
+     * @param crates    Cell indices of the crates
+     * @return          XOR of all crate keys
+     */
+    public long crates(int[] crates) {
+        long key = 0;
+
+        for (int crate : crates)
+            key ^= crateKeys[crate];
+
+        return key;
+    }
+}
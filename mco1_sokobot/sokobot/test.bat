@@ -0,0 +1,3 @@
+del /s /q *.class
+javac test/solver/SpillSearchTest.java -cp src
+java -classpath "src;test" solver.SpillSearchTest
\ No newline at end of file
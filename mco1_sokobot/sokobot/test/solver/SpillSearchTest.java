@@ -0,0 +1,36 @@
+package solver;
+
+import reader.FileReader;
+import reader.MapData;
+
+/**
+ * Solves levels with the external search at the smallest memory limit, so
+ * the open list spills and reloads batches of a single record, and checks
+ * that every solution replays. Exits with status 1 on the first failure.
+ */
+public class SpillSearchTest {
+    private static final String[] LEVELS = { "threeboxes1", "fourboxes2", "original1" };
+
+    /**
+     * Runs the check on each level.
+     *
+     * @param args  Unused
+     */
+    public static void main(String[] args) {
+        for (String level : LEVELS) {
+            MapData mapData = new FileReader().readFile(level);
+            char[][] map = mapData.mapLayer();
+            char[][] items = mapData.itemsLayer();
+
+            SolverOptions options = new SolverOptions().setEngine(SearchEngine.EXTERNAL).setMemoryLimit(4);
+            String solution = new SokoBot(options).solveSokobanPuzzle(mapData.columns, mapData.rows, map, items);
+
+            if (!SolutionCache.replays(mapData.columns, mapData.rows, map, items, solution)) {
+                System.err.println(level + ": no valid solution with a memory limit of 4");
+                System.exit(1);
+            }
+
+            System.out.println(level + ": solved in " + solution.length() + " moves");
+        }
+    }
+}